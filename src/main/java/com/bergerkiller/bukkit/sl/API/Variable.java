@@ -2,7 +2,7 @@ package com.bergerkiller.bukkit.sl.API;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.List;
 import java.util.function.Predicate;
 
 import com.bergerkiller.bukkit.common.block.SignSide;
@@ -163,22 +163,18 @@ public abstract class Variable implements VariableValue {
 
     public boolean addLocation(LinkedSign sign) {
         //Not already added?
-        for (LinkedSign ls : boundTo) {
-            if (ls == sign) {
-                return false;
-            }
-            if (ls.location.equals(sign.location)) {
-                if (ls.line == sign.line && ls.getSide() == sign.getSide()) {
-                    this.removeLocation(ls);
-                    break;
-                }
-            }
+        LinkedSign existing = findLocation(sign.location, sign.getSide(), sign.line);
+        if (existing == sign) {
+            return false;
+        } else if (existing != null) {
+            this.removeLocation(existing);
         }
 
         SignAddEvent event = new SignAddEvent(this, sign);
         Bukkit.getServer().getPluginManager().callEvent(event);
         if (!event.isCancelled()) {
             boundTo.add(sign);
+            onLocationAdded(sign);
             updateSign(sign);
             return true;
         }
@@ -192,6 +188,55 @@ public abstract class Variable implements VariableValue {
      */
     protected abstract void updateSign(LinkedSign sign);
 
+    /**
+     * Finds the linked sign this Variable is displayed on at a sign block, side and line
+     *
+     * @param signblock Sign block
+     * @param side Side of the sign
+     * @param lineAt Line of the sign
+     * @return Linked sign, or null if this Variable is not displayed there
+     */
+    protected LinkedSign findLocation(OfflineBlock signblock, SignSide side, int lineAt) {
+        for (LinkedSign ls : boundTo) {
+            if (ls.location.equals(signblock) && ls.line == lineAt && ls.getSide() == side) {
+                return ls;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds all the linked signs this Variable is displayed on at a sign block
+     *
+     * @param signblock Sign block
+     * @return Linked signs at this sign block (modifiable copy)
+     */
+    protected List<LinkedSign> findLocations(OfflineBlock signblock) {
+        ArrayList<LinkedSign> signs = new ArrayList<LinkedSign>();
+        for (LinkedSign ls : boundTo) {
+            if (ls.location.equals(signblock)) {
+                signs.add(ls);
+            }
+        }
+        return signs;
+    }
+
+    /**
+     * Called after a linked sign was added to this Variable
+     *
+     * @param sign Linked sign that was added
+     */
+    protected void onLocationAdded(LinkedSign sign) {
+    }
+
+    /**
+     * Called after a linked sign was removed from this Variable
+     *
+     * @param sign Linked sign that was removed
+     */
+    protected void onLocationRemoved(LinkedSign sign) {
+    }
+
     public boolean removeLocation(Block signblock, SignSide side, int lineAt) {
         return removeLocation(OfflineBlock.of(signblock), side, lineAt);
     }
@@ -218,14 +263,9 @@ public abstract class Variable implements VariableValue {
 
     private boolean removeLocation(OfflineBlock signblock, Predicate<LinkedSign> which) {
         boolean rem = false;
-        Iterator<LinkedSign> iter = this.boundTo.iterator();
-        while (iter.hasNext()) {
-            LinkedSign sign = iter.next();
-            if (sign.location.equals(signblock) && which.test(sign)) {
-                if (removeLocation(sign, false)) {
-                    iter.remove();
-                    rem = true;
-                }
+        for (LinkedSign sign : findLocations(signblock)) {
+            if (which.test(sign) && removeLocation(sign, true)) {
+                rem = true;
             }
         }
         return rem;
@@ -235,6 +275,7 @@ public abstract class Variable implements VariableValue {
         SignRemoveEvent event = new SignRemoveEvent(this, sign);
         Bukkit.getServer().getPluginManager().callEvent(event);
         if (!removeBoundTo || boundTo.remove(sign)) {
+            onLocationRemoved(sign);
             ArrayList<VirtualSign> signs = sign.getSigns(false);
             if (signs != null) {
                 for (VirtualSign vsign : signs) {
@@ -0,0 +1,51 @@
+package com.bergerkiller.bukkit.sl;
+
+import com.bergerkiller.bukkit.common.utils.StringUtil;
+
+/**
+ * Table of the pixel widths of characters displayed on signs, including the
+ * spacing that follows them. There is a width for every character, both
+ * normal and bold. The width of a character is computed the first time it is
+ * used, and is read from the table after that.
+ */
+final class CharacterWidths {
+    // Width + 1 of every character at (character * 2 + bold), 0 when not computed yet
+    private static final byte[] TABLE = new byte[0x20000];
+
+    private CharacterWidths() {
+    }
+
+    /**
+     * Gets the pixel width of a character displayed on a sign
+     *
+     * @param character Character
+     * @param bold Whether the character is displayed bold
+     * @return width
+     */
+    public static int get(char character, boolean bold) {
+        int index = (character << 1) | (bold ? 1 : 0);
+        int stored = TABLE[index];
+        if (stored > 0) {
+            return stored - 1;
+        }
+
+        // Compute it. Widths too large for the table are computed every time.
+        int width = compute(character, bold);
+        if (width >= 0 && width < Byte.MAX_VALUE) {
+            TABLE[index] = (byte) (width + 1);
+        }
+        return width;
+    }
+
+    private static int compute(char character, boolean bold) {
+        if (character == '\uFFFF') {
+            return 0; // Style only
+        } else if (character == '\0') {
+            return 1;
+        } else if (bold) {
+            return StringUtil.getWidth(character) + ( (character == ' ') ? 3 : 2 );
+        } else {
+            return StringUtil.getWidth(character) + ( (character == ' ') ? 2 : 1 );
+        }
+    }
+}
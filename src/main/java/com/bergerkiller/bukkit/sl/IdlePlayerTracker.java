@@ -0,0 +1,95 @@
+package com.bergerkiller.bukkit.sl;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+/**
+ * Tracks when players last moved, looked around or interacted, so that sign changes
+ * can be sent less often to players that are idle. Players in spectator mode are
+ * always considered idle. Time is measured in sign update ticks. Is only used on
+ * the main thread.
+ */
+class IdlePlayerTracker {
+    public static final IdlePlayerTracker INSTANCE = new IdlePlayerTracker();
+    /** Yaw or pitch (in degrees) a player must turn by for looking around to be activity */
+    private static final float LOOK_SEGMENT_ANGLE = 10.0f;
+    // Stores the last active tick in an array so that activity doesn't box a new value
+    private final Map<Player, int[]> lastActiveTicks = new IdentityHashMap<Player, int[]>();
+
+    /**
+     * Marks a player as active right now. If the player was idle, the signs that
+     * were not sent changes while the player was idle are updated.
+     *
+     * @param player Player that moved, looked around or interacted
+     */
+    public void setActive(Player player) {
+        int tick = VirtualSignStore.getUpdateTickCounter();
+        int[] lastActive = lastActiveTicks.get(player);
+        if (lastActive == null) {
+            lastActiveTicks.put(player, new int[] { tick });
+        } else if (lastActive[0] != tick) {
+            int timeout = SignLink.plugin.getIdleViewerTimeout();
+            boolean wasIdle = timeout > 0 && (tick - lastActive[0]) >= timeout;
+            lastActive[0] = tick;
+            if (wasIdle) {
+                VirtualSignStore.updateSignsWaitingForViewer(player);
+            }
+        }
+    }
+
+    /**
+     * Gets whether a movement of a player is noticeable enough to count as activity.
+     * This is the case when the player moves to another block, or looks in another
+     * direction. Moving around within a block or barely turning is not activity.
+     *
+     * @param from Location the player moved from
+     * @param to Location the player moved to
+     * @return True if the player moved noticeably
+     */
+    public static boolean isNoticeableMove(Location from, Location to) {
+        return from.getBlockX() != to.getBlockX()
+                || from.getBlockY() != to.getBlockY()
+                || from.getBlockZ() != to.getBlockZ()
+                || getLookSegment(from.getYaw()) != getLookSegment(to.getYaw())
+                || getLookSegment(from.getPitch()) != getLookSegment(to.getPitch());
+    }
+
+    // Slowly turning around eventually crosses into another segment
+    private static int getLookSegment(float angle) {
+        return (int) Math.floor(angle / LOOK_SEGMENT_ANGLE);
+    }
+
+    /**
+     * Stops tracking a player, when the player quits
+     *
+     * @param player Player
+     */
+    public void remove(Player player) {
+        lastActiveTicks.remove(player);
+    }
+
+    /**
+     * Gets whether a player is idle. This is the case when the player is in spectator
+     * mode, or has not been active for the configured idle timeout. Players that are
+     * not tracked, because they were never marked active, are not idle.
+     *
+     * @param player Player
+     * @return True if idle
+     */
+    public boolean isIdle(Player player) {
+        if (player.getGameMode() == GameMode.SPECTATOR) {
+            return true;
+        }
+        int timeout = SignLink.plugin.getIdleViewerTimeout();
+        if (timeout <= 0) {
+            return false;
+        }
+
+        int[] lastActive = lastActiveTicks.get(player);
+        return lastActive != null && (VirtualSignStore.getUpdateTickCounter() - lastActive[0]) >= timeout;
+    }
+}
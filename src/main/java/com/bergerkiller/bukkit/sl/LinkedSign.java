@@ -22,6 +22,7 @@ import com.bergerkiller.bukkit.common.utils.MaterialUtil;
 import com.bergerkiller.bukkit.common.utils.MathUtil;
 import com.bergerkiller.bukkit.common.utils.WorldUtil;
 import com.bergerkiller.bukkit.common.wrappers.BlockData;
+import com.bergerkiller.bukkit.sl.impl.TickerText;
 
 /**
  * Links multiple (Virtual) Signs together to create a single, long, horizontal line of text which can be altered
@@ -35,6 +36,7 @@ public class LinkedSign {
     private final ToggledState updateSignOrder = new ToggledState();
     public final SignDirection direction;
     private String oldtext;
+    private TickerText.ValueSnapshot oldTextSnapshot; // Computes oldtext when it is first requested
     private final ArrayList<VirtualSign> displaySigns = new ArrayList<VirtualSign>();
     private final LinkedText linkedText; // Handles text formatting
     private static final HashSet<Block> loopCheck = new HashSet<Block>(); // Used to prevent server freeze when finding signs
@@ -87,6 +89,10 @@ public class LinkedSign {
      * @return Line of text
      */
     public String getText() {
+        if (this.oldtext == null && this.oldTextSnapshot != null) {
+            this.oldtext = this.oldTextSnapshot.get();
+            this.oldTextSnapshot = null;
+        }
         return this.oldtext;
     }
 
@@ -117,23 +123,50 @@ public class LinkedSign {
      */
     public void setText(String value, boolean wrapAround, VariableTextPlayerFilter forPlayerFilter) {
         oldtext = value;
+        oldTextSnapshot = null;
+        if (prepareText(wrapAround)) {
+            linkedText.generate(value);
+            linkedText.apply(forPlayerFilter);
+        }
+    }
+
+    /**
+     * Refreshes the text on this linked sign with the current value of ticker text,
+     * updating all the signs. When the text wraps around, only the characters that are
+     * displayed on the signs are converted, which is faster for long scrolling text.
+     *
+     * @param text Ticker text whose current value to display
+     * @param wrapAround whether the value wraps around endlessly (ticker)
+     * @param forPlayerFilter Filter that specifies what players to refresh with this value,
+     *                        and which to ignore
+     */
+    public void setText(TickerText text, boolean wrapAround, VariableTextPlayerFilter forPlayerFilter) {
+        oldtext = null;
+        oldTextSnapshot = text.getValueSnapshot();
+        if (prepareText(wrapAround)) {
+            linkedText.generate(text);
+            linkedText.apply(forPlayerFilter);
+        }
+    }
+
+    // Prepares the linked text for the signs, returns false if no text should be displayed
+    private boolean prepareText(boolean wrapAround) {
         if (!SignLink.updateSigns) {
-            return; 
+            return false;
         }
         final ArrayList<VirtualSign> signs = getSigns();
         if (signs.isEmpty()) {
-            return;
+            return false;
         }
         for (VirtualSign sign : signs) {
             if (!sign.loadSign()) {
-                return;
+                return false;
             }
         }
 
         linkedText.setSigns(signs);
         linkedText.setWrapAround(wrapAround);
-        linkedText.generate(value);
-        linkedText.apply(forPlayerFilter);
+        return true;
     }
 
     /**
@@ -150,6 +183,7 @@ public class LinkedSign {
      */
     public void updateSignOrder() {
         this.updateSignOrder.set();
+        this.linkedText.invalidateEnds();
     }
 
     /**
@@ -1,16 +1,23 @@
 package com.bergerkiller.bukkit.sl;
 
 import com.bergerkiller.bukkit.common.block.SignSide;
+import com.bergerkiller.bukkit.sl.impl.TickerText;
+import com.bergerkiller.bukkit.sl.util.WeightedLruCache;
 
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Object used to build the text displayed on multiple linked signs
  */
 public class LinkedText {
+    // Text generated for every sign, shared by all linked signs that display the same text
+    // the same way. Many signs and players often show the same value at the same time.
+    private static final WeightedLruCache<LayoutKey, String[]> LAYOUT_CACHE = new WeightedLruCache<>(
+            2L * 1024L * 1024L, LinkedText::weighLayout);
+
     private int signCount = 0;
     private List<VirtualSign> signs = Collections.emptyList();
     private SignDirection direction = SignDirection.NONE;
@@ -20,7 +27,26 @@ public class LinkedText {
     private boolean isCentred = false;
     private int[] remainingWidths = new int[0];
     private StyledString[] parts = new StyledString[0];
+    private String[] partTexts = new String[0];
     private final StyledString tmpString = new StyledString();
+    // widthSums[i] is the total width of the first i characters
+    private int[] widthSums = new int[16];
+    // Spaces virtually added left and right of the characters while computing padding
+    private int padLeftCount = 0;
+    private int padLeftWidth = 0;
+    private int padRightCount = 0;
+    private int padRightWidth = 0;
+
+    // Text before and after the variable value, read from the real lines of the first and last sign
+    private VirtualSign endsFirstSign = null;
+    private VirtualSign endsLastSign = null;
+    private int endsSignCount = 0;
+    private SignDirection endsDirection = null;
+    private String endsFirstLine = null;
+    private String endsLastLine = null;
+    private boolean endsCentred = false;
+    private String prefix = "";
+    private String postfix = "";
 
     private final StyledString prefixChars = new StyledString();
     private final StyledString postfixChars = new StyledString();
@@ -59,71 +85,185 @@ public class LinkedText {
     private void handleWrapAround() {
         int remainingSigns = this.signCount;
 
-        // Add all current characters to the signs
-        int width = 0;
-        for (StyledCharacter character : this.characters) {
-            width += character.width;
-            if (width > VirtualLines.LINE_WIDTH_LIMIT) {
-                width = character.width;
-                remainingSigns--;
-                if (remainingSigns == 0) {
-                    width -= character.width;
-                    break;
-                }
+        // Find out how many signs the current characters fill, and the width used on the last one
+        int width;
+        int numChars = this.characters.size();
+        int lineStart = 0;
+        int lineFrom = 0;
+        while (true) {
+            int end = this.searchWidthSum(lineFrom + 1, numChars + 1, this.widthSum(lineStart) + VirtualLines.LINE_WIDTH_LIMIT);
+            if (end > numChars) {
+                width = this.widthSum(numChars) - this.widthSum(lineStart);
+                break;
             }
+            if (--remainingSigns == 0) {
+                width = 0;
+                break;
+            }
+            lineStart = end - 1;
+            lineFrom = end;
         }
 
         // Fill remaining space by wrapping around the characters
+        // First count how many characters fit, then add them a range at a time
         if (remainingSigns > 0) {
-            this.tmpString.clear();
-            this.tmpString.addAll(this.characters);
+            int numWrappedChars = 0;
             int wrappedCharIdx = 0;
             while (true) {
-                if (wrappedCharIdx == this.tmpString.size()) {
+                if (wrappedCharIdx == numChars) {
                     wrappedCharIdx = 0;
                 }
-                StyledCharacter sc = this.tmpString.get(wrappedCharIdx++);
-                width += sc.width;
+                int charWidth = this.characters.getWidth(wrappedCharIdx++);
+                width += charWidth;
                 if (width > VirtualLines.LINE_WIDTH_LIMIT) {
-                    width = sc.width;
+                    width = charWidth;
                     if (--remainingSigns == 0) {
                         break;
                     }
                 }
-                this.characters.add(sc);
+                numWrappedChars++;
+            }
+
+            this.tmpString.clear();
+            this.tmpString.append(this.characters, 0, numChars);
+            while (numWrappedChars > 0) {
+                int count = Math.min(numWrappedChars, numChars);
+                this.characters.append(this.tmpString, 0, count);
+                numWrappedChars -= count;
             }
+            this.updateWidthSums();
         }
     }
 
     // Fill the entire width of the signs with characters to make sure padding is correct
     // Add spaces to the left, right, or alternating depending on sign direction
     private void handleMultiSign() {
-        // Add spaces left and/or right of the characters array until we run out
         int leftPadding = this.prefixChars.getTotalWidth();
         int rightPadding = this.postfixChars.getTotalWidth();
         StyledCharacter space_first = this.characters.getFirst().asSpace();
         StyledCharacter space_last = this.characters.getLast().asSpace();
-        SignDirection space_dir = this.direction;
-        boolean alternator = false;
-        while (true) {
-            if (this.isCentred) {
-                alternator = !alternator;
-                space_dir = alternator ? SignDirection.LEFT : SignDirection.RIGHT;
+        this.padLeftWidth = space_first.width;
+        this.padRightWidth = space_last.width;
+
+        // Adding spaces never reduces the number of signs needed, so search for the most
+        // spaces that still fit. First find an upper bound, then narrow it down.
+        int fits = 0;
+        int overflows = 1;
+        while (this.getPaddedSignCount(overflows, leftPadding, rightPadding) <= this.signCount) {
+            fits = overflows;
+            overflows *= 2;
+        }
+        while ((overflows - fits) > 1) {
+            int mid = (fits + overflows) >>> 1;
+            if (this.getPaddedSignCount(mid, leftPadding, rightPadding) <= this.signCount) {
+                fits = mid;
+            } else {
+                overflows = mid;
             }
-            if (space_dir == SignDirection.LEFT) {
-                this.characters.add(0, space_first);
-                if (this.characters.getSignCount(leftPadding, rightPadding) > this.signCount) {
-                    this.characters.remove(0);
-                    break;
+        }
+
+        // Add the spaces
+        this.setPadding(fits);
+        int numLeft = this.padLeftCount;
+        int numRight = this.padRightCount;
+        this.setPadding(0);
+        this.characters.addRepeated(0, space_first, numLeft);
+        this.characters.addRepeated(this.characters.size(), space_last, numRight);
+        this.updateWidthSums();
+    }
+
+    // Sets the number of spaces virtually added left and right of the characters.
+    // When centred, spaces are added alternating, starting on the left.
+    private void setPadding(int numSpaces) {
+        if (this.isCentred) {
+            this.padLeftCount = (numSpaces + 1) >> 1;
+            this.padRightCount = numSpaces >> 1;
+        } else if (this.direction == SignDirection.LEFT) {
+            this.padLeftCount = numSpaces;
+            this.padRightCount = 0;
+        } else {
+            this.padLeftCount = 0;
+            this.padRightCount = numSpaces;
+        }
+    }
+
+    // Gets the amount of signs minimally required to display the characters with a number of spaces
+    // added to them. Does the same as StyledString.getSignCount, using the width sums.
+    private int getPaddedSignCount(int numSpaces, int leftPadding, int rightPadding) {
+        this.setPadding(numSpaces);
+        int length = this.padLeftCount + this.characters.size() + this.padRightCount;
+        int totalWidth = this.widthSum(length);
+
+        // First fill the last sign from the right, together with the right padding
+        int rightStart = this.searchWidthSum(0, length, rightPadding + totalWidth - VirtualLines.LINE_WIDTH_LIMIT);
+        if (rightStart == 0) {
+            return ((totalWidth + rightPadding + leftPadding) < VirtualLines.LINE_WIDTH_LIMIT) ? 1 : 2;
+        }
+
+        // All remaining characters are filled left-to-right, starting with the left padding
+        int signCount = 1;
+        int lineStart = 0;
+        int lineFrom = 0;
+        int lineOffset = leftPadding;
+        while (true) {
+            int end = this.searchWidthSum(lineFrom + 1, rightStart + 1,
+                    this.widthSum(lineStart) + VirtualLines.LINE_WIDTH_LIMIT - 1 - lineOffset);
+            if (end > rightStart) {
+                if ((lineOffset + this.widthSum(rightStart) - this.widthSum(lineStart)) > 0) {
+                    signCount++;
                 }
+                return signCount;
+            }
+            signCount++;
+            lineStart = end - 1;
+            lineFrom = end;
+            lineOffset = 0;
+        }
+    }
+
+    // Recomputes the width sums after the characters changed
+    private void updateWidthSums() {
+        int numChars = this.characters.size();
+        if (this.widthSums.length <= numChars) {
+            this.widthSums = new int[Math.max(numChars + 1, this.widthSums.length * 2)];
+        }
+        int sum = 0;
+        for (int i = 0; i < numChars; i++) {
+            this.widthSums[i] = sum;
+            sum += this.characters.getWidth(i);
+        }
+        this.widthSums[numChars] = sum;
+    }
+
+    // Gets the total width of the first count characters, including spaces virtually added
+    private int widthSum(int count) {
+        if (count <= this.padLeftCount) {
+            return count * this.padLeftWidth;
+        }
+        int leftWidth = this.padLeftCount * this.padLeftWidth;
+        int numChars = this.characters.size();
+        count -= this.padLeftCount;
+        if (count <= numChars) {
+            return leftWidth + this.widthSums[count];
+        } else {
+            return leftWidth + this.widthSums[numChars] + (count - numChars) * this.padRightWidth;
+        }
+    }
+
+    // Finds the lowest count between from (inclusive) and to (exclusive) with a width sum above a width.
+    // Returns to if there is none.
+    private int searchWidthSum(int from, int to, int width) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.widthSum(mid) > width) {
+                high = mid;
             } else {
-                this.characters.add(space_last);
-                if (this.characters.getSignCount(leftPadding, rightPadding) > this.signCount) {
-                    this.characters.remove(this.characters.size() - 1);
-                    break;
-                }
+                low = mid + 1;
             }
         }
+        return low;
     }
 
     // takes the prefix, postfix and value characters and combines them into parts displayed on each sign
@@ -133,84 +273,76 @@ public class LinkedText {
             part.clear();
         }
 
-        // This temporary buffer is used while building the String
-        this.tmpString.clear();
-
-        // Next, add characters to the sign lines until we run out of space on the sign, then reset and move on
+        // Find the characters that fit on each sign until we run out of space on the sign, then move on
+        // The character that did not fit is the first character of the next sign
+        int numChars = this.characters.size();
         int signIndex = 0;
-        int currentLineWidth = 0;
-        Iterator<StyledCharacter> charactersIter = this.characters.iterator();
+        int lineStart = 0;
+        int lineFrom = 0;
         while (true) {
-            boolean hasNext = charactersIter.hasNext();
-            StyledCharacter sc = hasNext ? charactersIter.next() : null;
-            if (hasNext) {
-                currentLineWidth += sc.width;
+            int end = this.searchWidthSum(lineFrom + 1, numChars + 1, this.widthSum(lineStart) + remainingWidths[signIndex]);
+            boolean hasNext = (end <= numChars);
+            int lineEnd = hasNext ? (end - 1) : numChars;
+
+            // Compile all styled characters of this sign into a single String-formatted line
+            // Handle prefix and postfix as well
+            StyledString part = this.parts[signIndex];
+            if (signIndex == 0 && !prefixChars.isEmpty()) {
+                part.addAll(prefixChars);
             }
-
-            // Try to add the character width to the next sign until it is full
-            if (currentLineWidth > remainingWidths[signIndex] || !hasNext) {
-                // Limit exceeded, this sign can not add this new character
-                // Reset the width to only include the new character
-                currentLineWidth = hasNext ? sc.width : 0;
-
-                // Compile all styled characters found thus far into a single String-formatted line
-                // Handle prefix and postfix as well
-                StyledString part = this.parts[signIndex];
-                if (signIndex == 0 && !prefixChars.isEmpty()) {
-                    part.addAll(prefixChars);
-                }
-                part.addAll(this.tmpString);
-                this.tmpString.clear();
-                if (signIndex == this.signCount - 1 && !postfixChars.isEmpty()) {
-                    part.addAll(postfixChars);
-                }
-
-                // End of characters
-                if (!hasNext) {
-                    break;
-                }
-
-                // Next sign
-                if (++signIndex >= this.signCount) {
-                    break; // done! No more sign space.
-                }
+            part.append(this.characters, lineStart, lineEnd);
+            if (signIndex == this.signCount - 1 && !postfixChars.isEmpty()) {
+                part.addAll(postfixChars);
             }
 
-            // Add the new character
-            if (hasNext) {
-                this.tmpString.add(sc);
-            } else {
+            // End of characters
+            if (!hasNext) {
                 break;
             }
+
+            // Next sign
+            if (++signIndex >= this.signCount) {
+                break; // done! No more sign space.
+            }
+            lineStart = lineEnd;
+            lineFrom = lineEnd + 1;
         }
     }
 
-    /**
-     * Generates the text displayed on the signs
-     * 
-     * @param variableValue to display
-     */
-    public void generate(String variableValue) {
-        // Sometimes signs are iterated in reverse!
-        int firstSignIndex = 0;
-        int lastSignIndex = this.signCount - 1;
-        if (this.direction == SignDirection.LEFT) {
-            firstSignIndex = lastSignIndex;
-            lastSignIndex = 0;
+    // Reads the text before and after the variable value from the real lines of the first and last sign
+    // This is only done again when the signs, their real lines, or the direction changed
+    private void updateEnds(int firstSignIndex, int lastSignIndex) {
+        VirtualSign firstSign = this.signs.get(firstSignIndex);
+        VirtualSign lastSign = this.signs.get(lastSignIndex);
+        String firstSignRealLine = firstSign.getRealLine(side, this.line);
+        String lastSignRealLine = (this.signCount > 1) ? lastSign.getRealLine(this.side, this.line) : null;
+        if (firstSign == this.endsFirstSign
+                && lastSign == this.endsLastSign
+                && this.signCount == this.endsSignCount
+                && this.direction == this.endsDirection
+                && firstSignRealLine.equals(this.endsFirstLine)
+                && Objects.equals(lastSignRealLine, this.endsLastLine)
+        ) {
+            return;
         }
+        this.endsFirstSign = firstSign;
+        this.endsLastSign = lastSign;
+        this.endsSignCount = this.signCount;
+        this.endsDirection = this.direction;
+        this.endsFirstLine = firstSignRealLine;
+        this.endsLastLine = lastSignRealLine;
 
         // Whether the variable text is centred in the middle
-        this.isCentred = (this.direction == SignDirection.NONE);
+        boolean isCentred = (this.direction == SignDirection.NONE);
 
         // Handle text before/after the variable value on the first sign
         String prefix = "";
         String postfix = "";
-        String firstSignRealLine = signs.get(firstSignIndex).getRealLine(side, this.line);
         int index1 = firstSignRealLine.indexOf('%');
         int index2 = firstSignRealLine.lastIndexOf('%');
         if ((index2 - index1) == 1) {
             // %% centers the text
-            this.isCentred = true;
+            isCentred = true;
             if (this.direction == SignDirection.LEFT) {
                 index1 = index2;
             } else {
@@ -234,13 +366,12 @@ public class LinkedText {
         }
 
         // Handle multi-sign display so that text on the last sign is appended correctly
-        if (this.signCount > 1) {
-            String lastSignRealLine = signs.get(lastSignIndex).getRealLine(this.side, this.line);
+        if (lastSignRealLine != null) {
             index1 = lastSignRealLine.indexOf('%');
             index2 = lastSignRealLine.lastIndexOf('%');
             if ((index2 - index1) == 1) {
                 // %% centers the text
-                this.isCentred = true;
+                isCentred = true;
                 if (this.direction == SignDirection.RIGHT) {
                     index1 = index2;
                 } else {
@@ -264,12 +395,118 @@ public class LinkedText {
             }
         }
 
-        // Convert text to StyledString
+        this.setEnds(prefix, postfix, isCentred);
+    }
+
+    // Sets the text before and after the variable value, and whether the value is centred
+    void setEnds(String prefix, String postfix, boolean isCentred) {
+        this.endsCentred = isCentred;
+        this.prefix = prefix;
+        this.postfix = postfix;
         this.prefixChars.setTo(prefix);
+    }
+
+    /**
+     * Forgets the text before and after the variable value read from the signs, so that it
+     * is read again the next time text is generated
+     */
+    public void invalidateEnds() {
+        this.endsFirstSign = null;
+        this.endsLastSign = null;
+    }
+
+    /**
+     * Generates the text displayed on the signs
+     * 
+     * @param variableValue to display
+     */
+    public void generate(String variableValue) {
+        this.generate(variableValue, null);
+    }
+
+    /**
+     * Generates the text displayed on the signs, showing the current value of ticker text.
+     * When the text wraps around, only the characters of the value that are displayed
+     * are converted.
+     *
+     * @param text Ticker text whose current value to display
+     */
+    public void generate(TickerText text) {
+        this.generate(null, text);
+    }
+
+    private void generate(String variableValue, TickerText text) {
+        // Sometimes signs are iterated in reverse!
+        int firstSignIndex = 0;
+        int lastSignIndex = this.signCount - 1;
+        if (this.direction == SignDirection.LEFT) {
+            firstSignIndex = lastSignIndex;
+            lastSignIndex = 0;
+        }
+
+        // Handle text before/after the variable value on the first and last sign
+        this.updateEnds(firstSignIndex, lastSignIndex);
+        String prefix = this.prefix;
+        String postfix = this.postfix;
+
+        // For wrapped around text only the characters that fit on the signs are displayed
+        // This can not be done when there is text after the value, as it continues the style
+        // of the last character of the full value
+        if (text != null) {
+            if (this.wrapAround && postfix.isEmpty()) {
+                variableValue = text.getVisibleText(this.signCount * VirtualLines.LINE_WIDTH_LIMIT);
+            } else {
+                variableValue = text.get();
+            }
+        }
+
+        // Text on a single sign is quick to lay out, and caching it costs more than it saves
+        if (this.signCount == 1 && !this.wrapAround) {
+            this.partTexts = this.layout(variableValue);
+            return;
+        }
+
+        // If the same text was already generated for signs like these, use that
+        LayoutKey layoutKey = new LayoutKey(variableValue, prefix, postfix, this.direction,
+                this.endsCentred, this.wrapAround, this.signCount);
+        String[] cachedTexts;
+        synchronized (LAYOUT_CACHE) {
+            cachedTexts = LAYOUT_CACHE.get(layoutKey);
+        }
+        if (cachedTexts != null) {
+            this.partTexts = cachedTexts;
+            return;
+        }
+
+        String[] texts = this.layout(variableValue);
+        synchronized (LAYOUT_CACHE) {
+            LAYOUT_CACHE.put(layoutKey, texts);
+        }
+        this.partTexts = texts;
+    }
+
+    /**
+     * Lays out a variable value on the signs, together with the text before and after it
+     * that was last read from the signs, or set using {@link #setEnds(String, String, boolean)}
+     *
+     * @param variableValue Variable value to display
+     * @return text displayed on every sign
+     */
+    String[] layout(String variableValue) {
+        // Sometimes signs are iterated in reverse!
+        int firstSignIndex = 0;
+        int lastSignIndex = this.signCount - 1;
+        if (this.direction == SignDirection.LEFT) {
+            firstSignIndex = lastSignIndex;
+            lastSignIndex = 0;
+        }
+        this.isCentred = this.endsCentred;
+
+        // Convert text to StyledString, the prefix was already converted
         this.characters.setStartStyle(this.prefixChars.getEndStyle());
         this.characters.setTo(variableValue);
         this.postfixChars.setStartStyle(this.characters.getEndStyle());
-        this.postfixChars.setTo(postfix);
+        this.postfixChars.setTo(this.postfix);
 
         // Empty values: use a single space as a placeholder
         // This makes sure post-processing does not trip
@@ -287,6 +524,7 @@ public class LinkedText {
         this.remainingWidths[lastSignIndex] -= this.postfixChars.getTotalWidth();
 
         // Handle special post-processing
+        this.updateWidthSums();
         if (this.wrapAround) {
             this.handleWrapAround();
         } else if (this.signCount > 1 || direction != SignDirection.NONE) {
@@ -295,6 +533,13 @@ public class LinkedText {
 
         // Create the parts displayed on each sign
         this.createParts();
+
+        // Store the text of every sign, the array is shared and not modified after this
+        String[] texts = new String[this.signCount];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = this.parts[i].toString();
+        }
+        return texts;
     }
 
     /**
@@ -303,8 +548,74 @@ public class LinkedText {
      * @param forPlayerFilter Filters what players to apply this linked text to
      */
     public void apply(VariableTextPlayerFilter forPlayerFilter) {
-        for (int i = 0; i < this.parts.length; i++) {
-            this.signs.get(i).setLine(this.side, this.line, this.parts[i].toString(), forPlayerFilter);
+        for (int i = 0; i < this.partTexts.length; i++) {
+            this.signs.get(i).setLine(this.side, this.line, this.partTexts[i], forPlayerFilter);
+        }
+    }
+
+    // About 2 bytes per character and the objects themselves
+    private static int weighLayout(LayoutKey key, String[] texts) {
+        int weight = 128 + 2 * (key.value.length() + key.prefix.length() + key.postfix.length());
+        for (String text : texts) {
+            weight += 48 + 2 * text.length();
+        }
+        return weight;
+    }
+
+    /**
+     * All the inputs that decide what text is generated for every sign
+     */
+    private static final class LayoutKey {
+        private final String value;
+        private final String prefix;
+        private final String postfix;
+        private final SignDirection direction;
+        private final boolean isCentred;
+        private final boolean wrapAround;
+        private final int signCount;
+        private final int hashCode;
+
+        public LayoutKey(String value, String prefix, String postfix, SignDirection direction,
+                         boolean isCentred, boolean wrapAround, int signCount
+        ) {
+            this.value = value;
+            this.prefix = prefix;
+            this.postfix = postfix;
+            this.direction = direction;
+            this.isCentred = isCentred;
+            this.wrapAround = wrapAround;
+            this.signCount = signCount;
+            int hash = value.hashCode();
+            hash = 31 * hash + prefix.hashCode();
+            hash = 31 * hash + postfix.hashCode();
+            hash = 31 * hash + direction.ordinal();
+            hash = 31 * hash + (isCentred ? 1 : 0);
+            hash = 31 * hash + (wrapAround ? 1 : 0);
+            hash = 31 * hash + signCount;
+            this.hashCode = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            } else if (!(o instanceof LayoutKey)) {
+                return false;
+            }
+            LayoutKey other = (LayoutKey) o;
+            return this.hashCode == other.hashCode
+                    && this.signCount == other.signCount
+                    && this.isCentred == other.isCentred
+                    && this.wrapAround == other.wrapAround
+                    && this.direction == other.direction
+                    && this.value.equals(other.value)
+                    && this.prefix.equals(other.prefix)
+                    && this.postfix.equals(other.postfix);
         }
     }
 }
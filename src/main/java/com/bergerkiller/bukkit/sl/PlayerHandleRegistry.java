@@ -0,0 +1,249 @@
+package com.bergerkiller.bukkit.sl;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+/**
+ * Assigns every (lowercase) player name a small unique integer handle. Per-player
+ * state is stored by this handle, so that it can be stored in arrays or int-keyed
+ * maps instead of being looked up by name. Handles stay valid while per-player state
+ * is stored for them using {@link #retain(int)}, also for players that are offline.
+ * The handle of a player without such state is recycled when the player quits.<br>
+ * <br>
+ * Also tracks what player is online for every handle. Players are registered when they
+ * join and unregistered when they quit. Looking up an offline player does not scan all
+ * online players again until another player joins or quits.<br>
+ * <br>
+ * Handles and players are looked up without locking. Only assigning, recycling and
+ * retaining handles locks the registry.
+ */
+public class PlayerHandleRegistry {
+    public static final PlayerHandleRegistry INSTANCE = new PlayerHandleRegistry();
+    /** Handle returned when a name has no handle assigned */
+    public static final int NO_HANDLE = -1;
+
+    private final ConcurrentHashMap<String, Integer> handlesByName = new ConcurrentHashMap<String, Integer>();
+    private final ConcurrentHashMap<Player, Integer> handlesByPlayer = new ConcurrentHashMap<Player, Integer>();
+    // Read without locking. Replaced with larger arrays when more handles are assigned.
+    private volatile AtomicReferenceArray<String> names = new AtomicReferenceArray<String>(16);
+    private volatile AtomicReferenceArray<Player> players = new AtomicReferenceArray<Player>(16);
+    private volatile AtomicIntegerArray offlineCheckedVersion = new AtomicIntegerArray(16);
+    private volatile int onlineVersion = 1;
+    // Only used while locked
+    private int[] retainCounts = new int[16];
+    private int[] freeHandles = new int[16];
+    private int freeCount = 0;
+    private int count = 0;
+
+    /**
+     * Gets the handle of a player name, assigning a new handle if the name
+     * has none yet
+     *
+     * @param playerName Name of the player, must be all-lowercase
+     * @return player handle
+     */
+    public int getHandle(String playerName) {
+        Integer handle = handlesByName.get(playerName);
+        return (handle != null) ? handle.intValue() : assignHandle(playerName);
+    }
+
+    private synchronized int assignHandle(String playerName) {
+        Integer handle = handlesByName.get(playerName);
+        if (handle != null) {
+            return handle.intValue();
+        }
+
+        int newHandle;
+        if (freeCount > 0) {
+            newHandle = freeHandles[--freeCount];
+        } else {
+            newHandle = count++;
+            if (newHandle == names.length()) {
+                grow(newHandle * 2);
+            }
+        }
+        names.set(newHandle, playerName);
+        handlesByName.put(playerName, Integer.valueOf(newHandle));
+        return newHandle;
+    }
+
+    // Copies all arrays to larger ones, must be locked
+    private void grow(int newLength) {
+        AtomicReferenceArray<String> newNames = new AtomicReferenceArray<String>(newLength);
+        AtomicReferenceArray<Player> newPlayers = new AtomicReferenceArray<Player>(newLength);
+        AtomicIntegerArray newOfflineCheckedVersion = new AtomicIntegerArray(newLength);
+        for (int i = 0; i < names.length(); i++) {
+            newNames.set(i, names.get(i));
+            newPlayers.set(i, players.get(i));
+            newOfflineCheckedVersion.set(i, offlineCheckedVersion.get(i));
+        }
+        names = newNames;
+        players = newPlayers;
+        offlineCheckedVersion = newOfflineCheckedVersion;
+        retainCounts = Arrays.copyOf(retainCounts, newLength);
+        freeHandles = Arrays.copyOf(freeHandles, newLength);
+    }
+
+    /**
+     * Gets the handle of an online player, assigning a new handle if the player
+     * has none yet
+     *
+     * @param player Player
+     * @return player handle
+     */
+    public int getHandle(Player player) {
+        Integer handle = handlesByPlayer.get(player);
+        if (handle != null) {
+            return handle.intValue();
+        } else {
+            return getHandle(player.getName().toLowerCase());
+        }
+    }
+
+    /**
+     * Gets the handle of a player name, without assigning one if the name has none
+     *
+     * @param playerName Name of the player, must be all-lowercase
+     * @return player handle, or {@link #NO_HANDLE} if none was assigned
+     */
+    public int findHandle(String playerName) {
+        Integer handle = handlesByName.get(playerName);
+        return (handle == null) ? NO_HANDLE : handle.intValue();
+    }
+
+    /**
+     * Gets the handle of a player registered as online using {@link #setOnline(Player)}.
+     * Does not lock, and is safe to call from any thread.
+     *
+     * @param player Player
+     * @return player handle, or {@link #NO_HANDLE} if the player is not registered as online
+     */
+    public int findOnlineHandle(Player player) {
+        Integer handle = handlesByPlayer.get(player);
+        return (handle == null) ? NO_HANDLE : handle.intValue();
+    }
+
+    /**
+     * Gets the lowercase player name of a handle
+     *
+     * @param handle Player handle
+     * @return Name of the player, all-lowercase
+     */
+    public String getName(int handle) {
+        return names.get(handle);
+    }
+
+    /**
+     * Gets the online player of a handle
+     *
+     * @param handle Player handle
+     * @return Player matching this handle, or null if not online right now
+     */
+    public Player getPlayer(int handle) {
+        AtomicReferenceArray<Player> players = this.players;
+        if (handle < 0 || handle >= players.length()) {
+            return null;
+        }
+        Player player = players.get(handle);
+        if (player == null && offlineCheckedVersion.get(handle) != onlineVersion) {
+            return findOnlinePlayer(handle);
+        }
+        return player;
+    }
+
+    // Player could have joined before being registered, so check once
+    private synchronized Player findOnlinePlayer(int handle) {
+        if (handle >= count || offlineCheckedVersion.get(handle) == onlineVersion) {
+            return players.get(handle);
+        }
+        offlineCheckedVersion.set(handle, onlineVersion);
+        String name = names.get(handle);
+        for (Player online : Bukkit.getOnlinePlayers()) {
+            if (online.getName().toLowerCase().equals(name)) {
+                setOnline(online);
+                return online;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Registers a player as being online
+     *
+     * @param player Player that joined
+     * @return player handle
+     */
+    public synchronized int setOnline(Player player) {
+        int handle = assignHandle(player.getName().toLowerCase());
+        players.set(handle, player);
+        handlesByPlayer.put(player, Integer.valueOf(handle));
+        onlineVersion++;
+        return handle;
+    }
+
+    /**
+     * Unregisters a player that is no longer online. If no per-player state is
+     * retained for the handle of the player, the handle is recycled, and can be
+     * assigned to another player name. State stored by the handle that is not
+     * retained must then be removed by the caller.
+     *
+     * @param player Player that quit
+     * @return True if the handle of the player was recycled
+     */
+    public synchronized boolean setOffline(Player player) {
+        boolean recycled = false;
+        Integer handle = handlesByPlayer.get(player);
+        if (handle != null) {
+            int h = handle.intValue();
+            if (players.get(h) == player) {
+                handlesByPlayer.remove(player);
+                players.set(h, null);
+                if (retainCounts[h] == 0) {
+                    recycle(h);
+                    recycled = true;
+                }
+            }
+        }
+        onlineVersion++;
+        return recycled;
+    }
+
+    // Makes a handle available for a new player name, must be locked
+    private void recycle(int handle) {
+        handlesByName.remove(names.get(handle));
+        names.set(handle, null);
+        offlineCheckedVersion.set(handle, 0);
+        freeHandles[freeCount++] = handle;
+    }
+
+    /**
+     * Marks that per-player state is stored for a handle, so that the handle is not
+     * recycled when the player quits. Must be released again using {@link #release(int)}
+     * when the state is removed.
+     *
+     * @param handle Player handle
+     */
+    public synchronized void retain(int handle) {
+        retainCounts[handle]++;
+    }
+
+    /**
+     * Releases per-player state retained using {@link #retain(int)}. If nothing else
+     * is retained, the handle is recycled right away when the player is offline, or
+     * otherwise when the player quits.
+     *
+     * @param handle Player handle
+     */
+    public synchronized void release(int handle) {
+        if (retainCounts[handle] > 0 && --retainCounts[handle] == 0
+                && players.get(handle) == null && names.get(handle) != null
+        ) {
+            recycle(handle);
+        }
+    }
+}
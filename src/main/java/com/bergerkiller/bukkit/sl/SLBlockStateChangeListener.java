@@ -15,13 +15,13 @@ import com.bergerkiller.bukkit.common.wrappers.BlockStateChange;
 class SLBlockStateChangeListener implements PacketBlockStateChangeListener {
     private static final AtomicReference<DirectApplier> applierCache = new AtomicReference<DirectApplier>(new DirectApplier());
 
-    public static void applyDirect(VirtualSign sign, Player player, CommonPacket packet) {
+    public static void applyDirect(VirtualSign sign, VirtualLines lines, Player player, CommonPacket packet) {
         DirectApplier applier = applierCache.getAndSet(null);
         if (applier == null) {
             applier = new DirectApplier();
         }
         applier.sign = sign;
-        applier.lines = sign.getLines(player);
+        applier.lines = lines;
         PacketBlockStateChangeListener.process(player, packet, applier);
         applierCache.set(applier);
     }
@@ -34,14 +34,15 @@ class SLBlockStateChangeListener implements PacketBlockStateChangeListener {
         }
 
         // Check managed by signlink at all
-        final VirtualSign sign = VirtualSign.get(player.getWorld(), change.getPosition());
+        // Runs on the network threads, so use the published signs and lines, which don't lock
+        final VirtualSign sign = VirtualSign.getPublished(player.getWorld(), change.getPosition());
         if (sign == null) {
             return true;
         }
 
         // Sign was updated: schedule a verify of the current text on the sign
         // In case this was also changed, cleans up other stuff
-        sign.scheduleVerify();
+        VirtualSignStore.queueVerify(sign);
 
         // Ignore vanilla signs
         if (!sign.hasVariables()) {
@@ -50,11 +51,17 @@ class SLBlockStateChangeListener implements PacketBlockStateChangeListener {
 
         CommonTagCompound metadata = change.getMetadata();
 
-        final VirtualLines lines = sign.getLines(player);
+        final int playerHandle = PlayerHandleRegistry.INSTANCE.findOnlineHandle(player);
+        final VirtualLines lines = sign.getPublishedLines(playerHandle);
         if (lines.isDifferentThanMetadata(metadata)) {
             lines.applyToSignMetadata(metadata);
         }
 
+        // The player now sees the published lines, which might not be the lines last sent
+        if (playerHandle != PlayerHandleRegistry.NO_HANDLE) {
+            VirtualSignStore.queueForgetSentLines(sign, playerHandle);
+        }
+
         return true;
     }
 
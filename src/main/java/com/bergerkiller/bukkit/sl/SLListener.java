@@ -2,9 +2,7 @@ package com.bergerkiller.bukkit.sl;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Level;
 
 import com.bergerkiller.bukkit.common.ToggledState;
@@ -24,8 +22,10 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.player.PlayerAnimationEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.event.world.ChunkLoadEvent;
@@ -45,12 +45,12 @@ import com.bergerkiller.bukkit.sl.impl.VariableMap;
 public class SLListener implements Listener {
     private final List<VariableImpl> variableBuffer = new ArrayList<VariableImpl>();
     private final List<LinkedSign> linkedSignBuffer = new ArrayList<LinkedSign>();
-    private final Map<String, Player> playersByLowercaseName = new HashMap<String, Player>();
 
     protected SLListener() {
         // Fill cache up-front
         for (Player player : Bukkit.getOnlinePlayers()) {
-            playersByLowercaseName.put(player.getName().toLowerCase(), player);
+            PlayerHandleRegistry.INSTANCE.setOnline(player);
+            IdlePlayerTracker.INSTANCE.setActive(player);
         }
     }
 
@@ -63,19 +63,9 @@ public class SLListener implements Listener {
      * @return Player matching this name, or null if not online right now
      */
     public Player getPlayerByLowercase(String name) {
-        synchronized (playersByLowercaseName) {
-            Player cached = playersByLowercaseName.get(name);
-            if (cached == null) {
-                for (Player player : Bukkit.getOnlinePlayers()) {
-                    if (player.getName().toLowerCase().equals(name)) {
-                        playersByLowercaseName.put(name, player);
-                        cached = player;
-                        break;
-                    }
-                }
-            }
-            return cached;
-        }
+        PlayerHandleRegistry registry = PlayerHandleRegistry.INSTANCE;
+        int handle = registry.findHandle(name);
+        return (handle == PlayerHandleRegistry.NO_HANDLE) ? null : registry.getPlayer(handle);
     }
 
     private final List<Object> suppressedSignTextChangeTags = new ArrayList<>();
@@ -237,6 +227,10 @@ public class SLListener implements Listener {
             for (int i = 0; i < variableBuffer.size(); i++) {
                 variableBuffer.get(i).updateSign(linkedSignBuffer.get(i));
             }
+
+            // Make the loaded signs known to the network threads right away,
+            // as the chunks are likely sent to players before the next tick
+            VirtualSign.publishSigns();
         } finally {
             variableBuffer.clear();
             linkedSignBuffer.clear();
@@ -282,12 +276,12 @@ public class SLListener implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onChunkUnload(ChunkUnloadEvent event) {
-        unloadSigns(WorldUtil.getBlockStates(event.getChunk()));
+        VirtualSign.removeChunk(event.getWorld(), event.getChunk().getX(), event.getChunk().getZ());
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onWorldUnload(WorldUnloadEvent event) {
-        unloadSigns(WorldUtil.getBlockStates(event.getWorld()));
+        VirtualSign.removeWorld(event.getWorld());
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -300,7 +294,8 @@ public class SLListener implements Listener {
         final Player p = event.getPlayer();
 
         // Store early
-        this.playersByLowercaseName.put(p.getName().toLowerCase(), p);
+        PlayerHandleRegistry.INSTANCE.setOnline(p);
+        IdlePlayerTracker.INSTANCE.setActive(p);
 
         if (SignLink.plugin.papi != null) {
             SignLink.plugin.papi.refreshVariables(p);
@@ -308,6 +303,24 @@ public class SLListener implements Listener {
         Variables.get("playername").forPlayer(p).set(p.getName());
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        // Fired very often, also when only looking around. Small movements are ignored.
+        if (event.getTo() != null && IdlePlayerTracker.isNoticeableMove(event.getFrom(), event.getTo())) {
+            IdlePlayerTracker.INSTANCE.setActive(event.getPlayer());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerInteractActivity(PlayerInteractEvent event) {
+        IdlePlayerTracker.INSTANCE.setActive(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerAnimation(PlayerAnimationEvent event) {
+        IdlePlayerTracker.INSTANCE.setActive(event.getPlayer());
+    }
+
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerTeleport(PlayerTeleportEvent event) {
         if (SignLink.plugin.papi != null) {
@@ -323,8 +336,13 @@ public class SLListener implements Listener {
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerQuit(PlayerQuitEvent event) {
         VirtualSign.invalidateAll(event.getPlayer());
+        VirtualSign.removeViewer(event.getPlayer());
 
         // Cleanup
-        this.playersByLowercaseName.remove(event.getPlayer().getName().toLowerCase());
+        int playerHandle = PlayerHandleRegistry.INSTANCE.findOnlineHandle(event.getPlayer());
+        if (PlayerHandleRegistry.INSTANCE.setOffline(event.getPlayer())) {
+            VirtualSign.forgetPlayerHandle(playerHandle);
+        }
+        IdlePlayerTracker.INSTANCE.remove(event.getPlayer());
     }
 }
@@ -2,6 +2,7 @@ package com.bergerkiller.bukkit.sl;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -56,6 +57,13 @@ public class SignLink extends PluginBase {
     private boolean papi_enabled = false;
     private boolean papi_show_on_signs = false;
     private boolean discover_sign_changes = false;
+    private int max_sign_verifies_per_tick = 100;
+    private int max_sign_packets_per_player_tick = 0;
+    private int packet_worker_threads = 2;
+    private int[] update_band_distances = new int[0];
+    private int[] update_band_intervals = new int[0];
+    private int idle_viewer_timeout = 6000;
+    private int idle_update_interval = 40;
     private List<String> papi_auto_variables = Collections.emptyList();
     private Task papi_auto_task = null;
     private final SLListener listener = new SLListener();
@@ -88,6 +96,72 @@ public class SignLink extends PluginBase {
         return discover_sign_changes;
     }
 
+    /**
+     * Gets the maximum number of signs that are routinely verified every tick.
+     * Signs due for verification above this limit are verified the ticks after.
+     *
+     * @return maximum number of sign verifications per tick, 0 or less for no limit
+     */
+    public int getMaxSignVerifiesPerTick() {
+        return max_sign_verifies_per_tick;
+    }
+
+    /**
+     * Gets the maximum number of sign updates sent to a single player every tick.
+     * When more signs must be updated, the signs closest to the player are sent first.
+     *
+     * @return maximum number of sign packets per player per tick, 0 or less for no limit
+     */
+    public int getMaxSignPacketsPerPlayerTick() {
+        return max_sign_packets_per_player_tick;
+    }
+
+    /**
+     * Gets the number of threads used to rewrite and send sign update packets
+     *
+     * @return number of packet worker threads, 0 to do this on the main thread
+     */
+    public int getPacketWorkerThreads() {
+        return packet_worker_threads;
+    }
+
+    /**
+     * Gets the interval in ticks at which changed sign text is sent to players
+     * at a distance from the sign. Is 1 to send every change right away, and 0 to
+     * not send changes at all until the player comes closer.
+     *
+     * @param distance Distance (in blocks) between the player and the sign on the x/z axis,
+     *                 measured the same way as the view range of signs
+     * @return update interval in ticks, 0 if changes are not sent
+     */
+    public int getUpdateInterval(int distance) {
+        for (int i = 0; i < update_band_distances.length; i++) {
+            if (distance <= update_band_distances[i]) {
+                return update_band_intervals[i];
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Gets the number of ticks a player must not move, look around or interact
+     * before sign changes are sent to the player at the idle update interval
+     *
+     * @return idle timeout in ticks, 0 or less to only do this for spectators
+     */
+    public int getIdleViewerTimeout() {
+        return idle_viewer_timeout;
+    }
+
+    /**
+     * Gets the interval in ticks at which changed sign text is sent to idle players
+     *
+     * @return idle update interval in ticks, 0 to not send changes until the player is active again
+     */
+    public int getIdleUpdateInterval() {
+        return idle_update_interval;
+    }
+
     @Override
     public void enable() {
         plugin = this;
@@ -143,6 +217,56 @@ public class SignLink extends PluginBase {
         config.addHeader("discoverSignChanges", "Enabling this may have a negative effect on server tick rate");
         this.discover_sign_changes = config.get("discoverSignChanges", false);
 
+        config.setHeader("maxSignVerifiesPerTick", "Maximum number of signs routinely checked for changes every tick");
+        config.addHeader("maxSignVerifiesPerTick", "Spreads out the checks when a lot of signs are loaded at once");
+        config.addHeader("maxSignVerifiesPerTick", "Set to 0 to check all signs that are due every tick");
+        this.max_sign_verifies_per_tick = config.get("maxSignVerifiesPerTick", 100);
+
+        config.setHeader("maxSignPacketsPerPlayerTick", "Maximum number of sign updates sent to a single player every tick");
+        config.addHeader("maxSignPacketsPerPlayerTick", "When more signs change at once, the signs closest to the player are sent first");
+        config.addHeader("maxSignPacketsPerPlayerTick", "and the rest are sent in the ticks after. The default of 0 sends all updates right away");
+        this.max_sign_packets_per_player_tick = config.get("maxSignPacketsPerPlayerTick", 0);
+
+        config.setHeader("packetWorkerThreads", "Number of threads that rewrite and send sign update packets to players");
+        config.addHeader("packetWorkerThreads", "Set to 0 to do this on the main thread, in a predictable order");
+        this.packet_worker_threads = config.get("packetWorkerThreads", 2);
+
+        config.setHeader("updateRateBands", "Limits how often changed sign text is sent to players further away from a sign");
+        config.addHeader("updateRateBands", "Every band is 'distance:interval', sending changes every interval ticks within that distance");
+        config.addHeader("updateRateBands", "Distance is measured on the x/z axis, like the range of " + VirtualSign.VIEW_RANGE + " blocks in which signs are updated");
+        config.addHeader("updateRateBands", "An interval of 0 keeps showing the text last sent until the player comes closer");
+        config.addHeader("updateRateBands", "Players beyond the last band are sent all changes right away. For example: ['16:1', '40:4', '60:0']");
+        if (!config.contains("updateRateBands")) {
+            config.set("updateRateBands", new ArrayList<String>());
+        }
+        List<String> bands = config.getList("updateRateBands", String.class);
+        this.update_band_distances = new int[bands.size()];
+        this.update_band_intervals = new int[bands.size()];
+        int numBands = 0;
+        for (String band : bands) {
+            int sep = band.indexOf(':');
+            int distance = (sep == -1) ? -1 : ParseUtil.parseInt(band.substring(0, sep).trim(), -1);
+            int interval = (sep == -1) ? -1 : ParseUtil.parseInt(band.substring(sep + 1).trim(), -1);
+            if (distance < 0 || interval < 0) {
+                log(Level.WARNING, "Update rate band: " + band + " has not been recognized!");
+                continue;
+            }
+            this.update_band_distances[numBands] = distance;
+            this.update_band_intervals[numBands] = interval;
+            numBands++;
+        }
+        this.update_band_distances = Arrays.copyOf(this.update_band_distances, numBands);
+        this.update_band_intervals = Arrays.copyOf(this.update_band_intervals, numBands);
+
+        config.setHeader("idleViewerTimeout", "Number of seconds a player must not move, look around or interact to be considered idle");
+        config.addHeader("idleViewerTimeout", "Players in spectator mode are always considered idle. Set to 0 to only do this for spectators");
+        this.idle_viewer_timeout = Math.max(0, config.get("idleViewerTimeout", 300)) * 20;
+
+        config.setHeader("idleUpdateInterval", "Interval in ticks at which changed sign text is sent to idle players");
+        config.addHeader("idleUpdateInterval", "An interval of 0 keeps showing the text it showed until the player moves again");
+        config.addHeader("idleUpdateInterval", "Set to 1 to send idle players all changes right away");
+        this.idle_update_interval = Math.max(0, config.get("idleUpdateInterval", 40));
+
         // PlaceholderAPI
         config.setHeader("PlaceholderAPI", "Sets the settings for the PlaceholderAPI plugin. Only applies when detected.");
         ConfigurationNode papiConfig = config.getNode("PlaceholderAPI");
@@ -699,7 +823,7 @@ public class SignLink extends PluginBase {
         public void run() {
             try {
                 Variables.updateTickers();
-                VirtualSignStore.forEachSign(VirtualSign::update);
+                VirtualSignStore.updateSigns();
             } catch (Throwable t) {
                 SignLink.plugin.log(Level.SEVERE, "An error occured while updating sign text:");
                 SignLink.plugin.handle(t);
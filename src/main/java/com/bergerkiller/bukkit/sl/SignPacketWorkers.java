@@ -0,0 +1,184 @@
+package com.bergerkiller.bukkit.sl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.entity.Player;
+
+import com.bergerkiller.bukkit.common.protocol.CommonPacket;
+import com.bergerkiller.bukkit.common.utils.PacketUtil;
+
+/**
+ * Rewrites and sends sign update packets on a small number of worker threads, so that
+ * the NBT and json work is not done on the main thread. All packets of the same sign
+ * are handled by the same worker, so that they are sent in the order they were created.
+ * With no worker threads, packets are rewritten and sent right away on the calling thread.<br>
+ * <br>
+ * Every packet queued for a sign is given a sequence number. When the sign is sent unchanged
+ * to a player, the packets queued before it are no longer sent to that player, so they can't
+ * replace the text of the unchanged sign.
+ */
+class SignPacketWorkers {
+    private final ExecutorService[] workers;
+    private final PacketSender sender;
+
+    public SignPacketWorkers(int numThreads) {
+        this(numThreads, SignPacketWorkers::applyAndSend);
+    }
+
+    SignPacketWorkers(int numThreads, PacketSender sender) {
+        this.sender = sender;
+        this.workers = new ExecutorService[Math.max(0, numThreads)];
+        for (int i = 0; i < this.workers.length; i++) {
+            final String threadName = "SignLink-Packets-" + (i + 1);
+            this.workers[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Applies lines to the update packet of a sign, and sends it to players.
+     * Must be called on the main thread.
+     *
+     * @param packets Packets queued for the sign the packet is for
+     * @param lines Lines to apply, must not be modified anymore
+     * @param packet Update packet of the sign, created on the main thread
+     * @param recipients Players to send the packet to, must not be modified anymore
+     */
+    public void send(SignPackets packets, VirtualLines lines, CommonPacket packet, List<Player> recipients) {
+        if (this.workers.length == 0) {
+            sendSafe(packets.sign, lines, packet, recipients);
+        } else {
+            final long sequence = ++packets.sequence;
+            getWorker(packets).execute(() -> {
+                List<Player> current = packets.removeSuperseded(recipients, sequence);
+                if (!current.isEmpty()) {
+                    sendSafe(packets.sign, lines, packet, current);
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends the update packet of a sign to a player without applying any lines to it.
+     * Packets of the same sign queued before it are no longer sent to the player.
+     * Does not wait for the packet to be sent. Must be called on the main thread.
+     *
+     * @param packets Packets queued for the sign the packet is for
+     * @param packet Update packet of the sign, created on the main thread
+     * @param player Player to send the packet to
+     */
+    public void sendUnchanged(SignPackets packets, CommonPacket packet, Player player) {
+        List<Player> recipients = Collections.singletonList(player);
+        if (this.workers.length == 0) {
+            sendSafe(packets.sign, null, packet, recipients);
+            return;
+        }
+
+        final Long sequence = Long.valueOf(++packets.sequence);
+        packets.unchangedSequences.put(player, sequence);
+        getWorker(packets).execute(() -> {
+            sendSafe(packets.sign, null, packet, recipients);
+            packets.unchangedSequences.remove(player, sequence);
+        });
+    }
+
+    // All packets of the same sign go to the same worker
+    private ExecutorService getWorker(SignPackets packets) {
+        return this.workers[Math.floorMod(System.identityHashCode(packets), this.workers.length)];
+    }
+
+    private void sendSafe(VirtualSign sign, VirtualLines lines, CommonPacket packet, List<Player> recipients) {
+        try {
+            this.sender.send(sign, lines, packet, recipients);
+        } catch (Throwable t) {
+            SignLink.plugin.handle(t);
+        }
+    }
+
+    private static void applyAndSend(VirtualSign sign, VirtualLines lines, CommonPacket packet, List<Player> recipients) {
+        if (lines != null) {
+            SLBlockStateChangeListener.applyDirect(sign, lines, recipients.get(0), packet);
+        }
+        for (Player player : recipients) {
+            PacketUtil.sendPacket(player, packet, false); // Send and skip listeners
+        }
+    }
+
+    /**
+     * Stops all worker threads, waiting a short while for the packets
+     * still being sent
+     */
+    public void shutdown() {
+        for (ExecutorService worker : this.workers) {
+            worker.shutdown();
+        }
+        try {
+            for (ExecutorService worker : this.workers) {
+                worker.awaitTermination(1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Packets of a single sign queued on the workers
+     */
+    static final class SignPackets {
+        /** Virtual Sign the packets are for */
+        final VirtualSign sign;
+        // Sequence number of the last packet queued, only changed on the main thread
+        private long sequence = 0;
+        // Sequence number of the unchanged packet queued for a player, until it is sent
+        private final ConcurrentHashMap<Player, Long> unchangedSequences = new ConcurrentHashMap<>();
+
+        SignPackets(VirtualSign sign) {
+            this.sign = sign;
+        }
+
+        // Leaves out the recipients that were queued an unchanged packet after this packet
+        private List<Player> removeSuperseded(List<Player> recipients, long sequence) {
+            if (this.unchangedSequences.isEmpty()) {
+                return recipients;
+            }
+            List<Player> current = null;
+            for (int i = 0; i < recipients.size(); i++) {
+                Player player = recipients.get(i);
+                Long unchangedSequence = this.unchangedSequences.get(player);
+                if (unchangedSequence != null && unchangedSequence.longValue() > sequence) {
+                    if (current == null) {
+                        current = new ArrayList<>(recipients.subList(0, i));
+                    }
+                } else if (current != null) {
+                    current.add(player);
+                }
+            }
+            return (current == null) ? recipients : current;
+        }
+    }
+
+    /**
+     * Does the actual work of a send, on the thread of the worker
+     */
+    @FunctionalInterface
+    interface PacketSender {
+        /**
+         * Applies lines to the update packet of a sign, and sends it to players
+         *
+         * @param sign Virtual Sign the packet is for
+         * @param lines Lines to apply, null to send the packet unchanged
+         * @param packet Update packet of the sign
+         * @param recipients Players to send the packet to
+         */
+        void send(VirtualSign sign, VirtualLines lines, CommonPacket packet, List<Player> recipients);
+    }
+}
@@ -33,15 +33,19 @@ public class StyledCharacter {
         this.character = character;
         this.color = color;
         this.formats = formats;
-        if (this.isStyleOnly()) {
-            this.width = 0;
-        } else if (this.character == '\0') {
-            this.width = 1;
-        } else if (isBold()) {
-            this.width = StringUtil.getWidth(this.character) + ( (this.character == ' ') ? 3 : 2 );
-        } else {
-            this.width = StringUtil.getWidth(this.character) + ( (this.character == ' ') ? 2 : 1 );
-        }
+        this.width = getWidth(character, isBold());
+    }
+
+    /**
+     * Gets the pixel width of a character displayed on a sign, including the
+     * spacing that follows it
+     *
+     * @param character Character
+     * @param bold Whether the character is displayed bold
+     * @return width
+     */
+    public static int getWidth(char character, boolean bold) {
+        return CharacterWidths.get(character, bold);
     }
 
     /**
@@ -120,13 +124,33 @@ public class StyledCharacter {
      * @return Formatted String
      */
     public static String stringify(Iterable<StyledCharacter> characters) {
-        StyledColor currentColor = StyledColor.NONE;
-        ChatColor[] currentFormats = StyledCharacter.NO_FORMATS;
-        StringBuilder result = new StringBuilder();
-        boolean isFormatReset;
+        Stringifier result = new Stringifier();
         for (StyledCharacter sc : characters) {
+            result.appendStyle(sc);
+            if (!sc.isStyleOnly()) {
+                result.append(sc.character);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Builds a legacy chat formatted String, only writing the style codes needed
+     * to change from the style of the previous character to the next.
+     */
+    static final class Stringifier {
+        private final StringBuilder result = new StringBuilder();
+        private StyledColor currentColor = StyledColor.NONE;
+        private ChatColor[] currentFormats = StyledCharacter.NO_FORMATS;
+
+        /**
+         * Changes the style of the characters appended after this
+         *
+         * @param sc Character whose color and formats to use
+         */
+        public void appendStyle(StyledCharacter sc) {
             // Handle format changes
-            isFormatReset = false;
+            boolean isFormatReset = false;
             if (sc.formats != currentFormats) {
                 for (ChatColor oldFormat : currentFormats) {
                     if (!LogicUtil.contains(oldFormat, sc.formats)) {
@@ -160,11 +184,20 @@ public class StyledCharacter {
                     sc.appendFormats(result);
                 }
             }
-            // Append the actual character of interest
-            if (!sc.isStyleOnly()) {
-                result.append(sc.character);
-            }
         }
-        return result.toString();
+
+        /**
+         * Appends a character using the current style
+         *
+         * @param c Character to append
+         */
+        public void append(char c) {
+            result.append(c);
+        }
+
+        @Override
+        public String toString() {
+            return result.toString();
+        }
     }
 }
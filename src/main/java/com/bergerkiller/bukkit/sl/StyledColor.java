@@ -90,6 +90,15 @@ public abstract class StyledColor {
 
     public abstract boolean sameFormat(StyledColor color);
 
+    /**
+     * Gets whether this is a hex color, rather than one of the legacy chat colors
+     *
+     * @return True if this is a hex color
+     */
+    public boolean isHex() {
+        return false;
+    }
+
     @Override
     public String toString() {
         return formatStr;
@@ -122,6 +131,11 @@ public abstract class StyledColor {
             super(formatStr);
         }
 
+        @Override
+        public boolean isHex() {
+            return true;
+        }
+
         @Override
         public boolean sameFormat(StyledColor color) {
             return color instanceof HexStyledColor && format().equals(color.format());
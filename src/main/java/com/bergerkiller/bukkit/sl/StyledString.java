@@ -1,7 +1,10 @@
 package com.bergerkiller.bukkit.sl;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.bukkit.ChatColor;
 
@@ -9,16 +12,33 @@ import com.bergerkiller.bukkit.common.utils.LogicUtil;
 import com.bergerkiller.bukkit.common.utils.StringUtil;
 
 /**
- * A list of styled characters with extra String-like helper methods
+ * A list of styled characters with extra String-like helper methods.<br>
+ * <br>
+ * Internally only the characters and their widths are stored, together with
+ * runs of characters that share the same style. Every run only stores the start
+ * index and the style of its characters. Styles with legacy colors are shared by
+ * all strings, styles with hex colors belong to the string they are used in.
+ * The styled characters of this list are created when they are requested.
  */
-public class StyledString extends ArrayList<StyledCharacter> {
-    private static final long serialVersionUID = -9201633429398374786L;
+public class StyledString extends AbstractList<StyledCharacter> implements Cloneable {
+    private static final char STYLE_ONLY_CHAR = '\uFFFF';
+    private static final char[] NO_CHARS = new char[0];
+    private static final int[] NO_INTS = new int[0];
+    private static final Style[] NO_STYLES = new Style[0];
     private StyledCharacter startStyle = StyledCharacter.INITIAL_STYLE;
+    private char[] chars = NO_CHARS;
+    private int[] widths = NO_INTS;
+    private int size = 0;
+    private int totalWidth = 0;
+    // Every run of characters with the same style, runStarts[i] is the index of the first character
+    private int[] runStarts = NO_INTS;
+    private Style[] runStyles = NO_STYLES;
+    private int runCount = 0;
 
     /**
      * Sets the start style of this Styled String. It's the style applied to the very
      * first character onwards. By default it is set to all-black unstyled characters.
-     * 
+     *
      * @param startStyle
      */
     public void setStartStyle(StyledCharacter startStyle) {
@@ -27,7 +47,7 @@ public class StyledString extends ArrayList<StyledCharacter> {
 
     /**
      * Sets the contents of this Styled String to that of a String
-     * 
+     *
      * @param text to set to
      */
     public void setTo(String text) {
@@ -37,62 +57,110 @@ public class StyledString extends ArrayList<StyledCharacter> {
 
     /**
      * Appends the contents of a String to this Styled String
-     * 
+     *
      * @param text to append
      */
     public void append(String text) {
-        // Turn every character into a 'styled' character token
         // Every single character must know what styles are applied in case of cut-off
-        StyledCharacter endStyle = this.getEndStyle();
-        StyledColor currentColor = endStyle.color;
-        ChatColor[] currentFormats = endStyle.formats;
+        // This is stored as a run of characters with the same style
+        Style style = this.getAppendStyle();
         boolean hasFormatting = false;
-        for (int i = 0; i < text.length(); i++) {
+        int len = text.length();
+        this.ensureCapacity(this.size + len);
+        for (int i = 0; i < len; i++) {
             char c = text.charAt(i);
             if (c != StringUtil.CHAT_STYLE_CHAR) {
                 // New character
-                this.add(new StyledCharacter(c, currentColor, currentFormats));
+                this.appendChar(c, style);
                 continue;
             }
 
             hasFormatting = true;
-            if (++i >= text.length()) break;
+            if (++i >= len) break;
             char code = text.charAt(i);
 
-            // Handle legacy chat color characters
-            if ((code >= '0' && code <= '9') || (code >= 'a' && code <= 'f') || (code >= 'A' && code <= 'F')) {
-                currentColor = StyledColor.byColorCode(code);
-                continue;
-            }
-
             // Handle hex color extension (bungeecord)
             if (code == 'x' || code == 'X') {
                 StyledColor hexColor = StyledColor.decodeHex(text, i - 1);
                 if (hexColor != null) {
-                    currentColor = hexColor;
+                    style = Style.of(hexColor, style.formats);
                     i += 12; // Skip the 6 style chars + hex colors too
                 }
                 continue;
             }
 
-            // Other format characters
-            ChatColor cc = ChatColor.getByChar(code);
-            if (cc == ChatColor.RESET) {
-                currentFormats = new ChatColor[0];
-                currentColor = StyledColor.NONE;
-            } else if (cc != null && !LogicUtil.contains(cc, currentFormats)) {
-                currentFormats = Arrays.copyOf(currentFormats, currentFormats.length + 1);
-                currentFormats[currentFormats.length - 1] = cc;
-            }
+            // Legacy chat color and other format characters
+            style = style.withCode(code);
         }
         if (this.isEmpty() && hasFormatting) {
-            this.add(StyledCharacter.createStyleChar(currentColor, currentFormats));
+            this.appendChar(STYLE_ONLY_CHAR, style);
+        }
+    }
+
+    /**
+     * Appends the characters of a String to this Styled String, without handling
+     * any chat formatting. The characters are not styled.
+     *
+     * @param text to append
+     */
+    public void appendUnstyled(String text) {
+        Style style = Style.of(StyledColor.NONE, StyledCharacter.NO_FORMATS);
+        int len = text.length();
+        this.ensureCapacity(this.size + len);
+        for (int i = 0; i < len; i++) {
+            this.appendChar(text.charAt(i), style);
+        }
+    }
+
+    /**
+     * Appends a range of the styled characters of another Styled String
+     *
+     * @param string Styled String to append characters of
+     * @param fromIndex Index of the first character to append (inclusive)
+     * @param toIndex Index after the last character to append (exclusive)
+     */
+    public void append(StyledString string, int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > string.size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Range [" + fromIndex + ", " + toIndex + ") of size " + string.size);
+        }
+        if (fromIndex == toIndex) {
+            return;
+        }
+
+        int count = toIndex - fromIndex;
+        this.ensureCapacity(this.size + count);
+        int offset = this.size - fromIndex;
+        for (int run = string.findRun(fromIndex); run < string.runCount && string.runStarts[run] < toIndex; run++) {
+            this.addRun(Math.max(fromIndex, string.runStarts[run]) + offset, string.runStyles[run]);
+        }
+        System.arraycopy(string.chars, fromIndex, this.chars, this.size, count);
+        System.arraycopy(string.widths, fromIndex, this.widths, this.size, count);
+        for (int i = fromIndex; i < toIndex; i++) {
+            this.totalWidth += string.widths[i];
+        }
+        this.size += count;
+        this.modCount++;
+    }
+
+    /**
+     * Inserts a styled character a number of times
+     *
+     * @param index Index at which to insert the characters
+     * @param character Styled character to insert
+     * @param count Number of times to insert the character
+     */
+    public void addRepeated(int index, StyledCharacter character, int count) {
+        if (index < 0 || index > this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        if (count > 0) {
+            this.replace(index, index, character, count);
         }
     }
 
     /**
      * Gets the style used at the beginning of the current String.
-     * 
+     *
      * @return start style character
      */
     public StyledCharacter getStartStyle() {
@@ -104,20 +172,20 @@ public class StyledString extends ArrayList<StyledCharacter> {
      * If this String is empty, the start style is returned instead.
      * This start style is set using {@link #append(String)} and
      * {@link #setTo(String)}.
-     * 
+     *
      * @return end style character
      */
     public StyledCharacter getEndStyle() {
         if (this.isEmpty()) {
             return this.startStyle;
         } else {
-            return this.getLast();
+            return this.runStyles[this.runCount - 1].styleChar;
         }
     }
 
     /**
      * Gets the first styled character of this String
-     * 
+     *
      * @return first character
      */
     public StyledCharacter getFirst() {
@@ -126,29 +194,36 @@ public class StyledString extends ArrayList<StyledCharacter> {
 
     /**
      * Gets the last styled character of this String
-     * 
+     *
      * @return last character
      */
     public StyledCharacter getLast() {
         return this.get(this.size() - 1);
     }
 
+    /**
+     * Gets the pixel width of a single character of this String
+     *
+     * @param index Index of the character
+     * @return character width
+     */
+    public int getWidth(int index) {
+        checkIndex(index);
+        return this.widths[index];
+    }
+
     /**
      * Gets the total amount of pixel width of this Styled String
-     * 
+     *
      * @return total width
      */
     public int getTotalWidth() {
-        int totalWidth = 0;
-        for (StyledCharacter sc : this) {
-            totalWidth += sc.width;
-        }
-        return totalWidth;
+        return this.totalWidth;
     }
 
     /**
      * Gets the amount of signs minimally required to display this Styled String
-     * 
+     *
      * @param leftPadding amount of width already occupied to the left
      * @param rightPadding amount of width already occupied to the right
      * @return number of signs needed to display
@@ -157,11 +232,10 @@ public class StyledString extends ArrayList<StyledCharacter> {
         // Definitely need 2 or more signs. First handle the characters to the right.
         // This handles the rightPadding logic.
         int signCount = 1;
-        int endIndex = this.size() - 1;
+        int endIndex = this.size - 1;
         int width = rightPadding;
         while (endIndex >= 0) {
-            StyledCharacter sc = this.get(endIndex);
-            int newWidth = (width + sc.width);
+            int newWidth = (width + this.widths[endIndex]);
             if (canFitOnSign(newWidth)) {
                 width = newWidth;
                 endIndex--;
@@ -183,10 +257,10 @@ public class StyledString extends ArrayList<StyledCharacter> {
         // All remaining characters must be filled left-to-right
         width = leftPadding;
         for (int i = 0; i <= endIndex; i++) {
-            StyledCharacter sc = this.get(i);
-            width += sc.width;
+            int charWidth = this.widths[i];
+            width += charWidth;
             if (!canFitOnSign(width)) {
-                width = sc.width;
+                width = charWidth;
                 signCount++;
             }
         }
@@ -196,17 +270,285 @@ public class StyledString extends ArrayList<StyledCharacter> {
         return signCount;
     }
 
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public StyledCharacter get(int index) {
+        checkIndex(index);
+        Style style = this.runStyles[this.findRun(index)];
+        char c = this.chars[index];
+        return (c == STYLE_ONLY_CHAR) ? style.styleChar : new StyledCharacter(c, style.color, style.formats);
+    }
+
+    @Override
+    public StyledCharacter set(int index, StyledCharacter character) {
+        StyledCharacter old = this.get(index);
+        this.replace(index, index + 1, character, 1);
+        return old;
+    }
+
+    @Override
+    public void add(int index, StyledCharacter character) {
+        if (index == this.size) {
+            this.ensureCapacity(this.size + 1);
+            this.appendChar(character.character, Style.of(character.color, character.formats));
+        } else {
+            this.addRepeated(index, character, 1);
+        }
+    }
+
+    @Override
+    public StyledCharacter remove(int index) {
+        StyledCharacter old = this.get(index);
+        this.replace(index, index + 1, null, 0);
+        return old;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends StyledCharacter> c) {
+        if (c instanceof StyledString) {
+            StyledString string = (StyledString) c;
+            this.append(string, 0, string.size);
+            return !string.isEmpty();
+        } else {
+            return super.addAll(c);
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.size = 0;
+        this.totalWidth = 0;
+        this.runCount = 0;
+        this.modCount++;
+    }
+
     @Override
     public String toString() {
-        return StyledCharacter.stringify(this);
+        StyledCharacter.Stringifier result = new StyledCharacter.Stringifier();
+        for (int run = 0; run < this.runCount; run++) {
+            // All characters of a run have the same style, so it only has to be applied once
+            result.appendStyle(this.runStyles[run].styleChar);
+            int end = (run == this.runCount - 1) ? this.size : this.runStarts[run + 1];
+            for (int i = this.runStarts[run]; i < end; i++) {
+                char c = this.chars[i];
+                if (c != STYLE_ONLY_CHAR) {
+                    result.append(c);
+                }
+            }
+        }
+        return result.toString();
     }
 
     @Override
     public StyledString clone() {
-        return (StyledString) super.clone();
+        try {
+            StyledString clone = (StyledString) super.clone();
+            clone.chars = Arrays.copyOf(this.chars, this.size);
+            clone.widths = Arrays.copyOf(this.widths, this.size);
+            clone.runStarts = Arrays.copyOf(this.runStarts, this.runCount);
+            clone.runStyles = Arrays.copyOf(this.runStyles, this.runCount);
+            return clone;
+        } catch (CloneNotSupportedException ex) {
+            throw new InternalError(ex);
+        }
+    }
+
+    private Style getAppendStyle() {
+        if (this.isEmpty()) {
+            return Style.of(this.startStyle.color, this.startStyle.formats);
+        } else {
+            return this.runStyles[this.runCount - 1];
+        }
+    }
+
+    // Appends a single character, capacity must have been ensured
+    private void appendChar(char c, Style style) {
+        this.addRun(this.size, style);
+        int width = CharacterWidths.get(c, style.bold);
+        this.chars[this.size] = c;
+        this.widths[this.size] = width;
+        this.totalWidth += width;
+        this.size++;
+        this.modCount++;
+    }
+
+    // Starts a new run of characters with a style, unless the last run has the same style
+    private void addRun(int start, Style style) {
+        if (this.runCount > 0 && this.runStyles[this.runCount - 1].isSameStyle(style)) {
+            return;
+        }
+        if (this.runCount == this.runStarts.length) {
+            int newLength = Math.max(4, this.runCount * 2);
+            this.runStarts = Arrays.copyOf(this.runStarts, newLength);
+            this.runStyles = Arrays.copyOf(this.runStyles, newLength);
+        }
+        this.runStarts[this.runCount] = start;
+        this.runStyles[this.runCount] = style;
+        this.runCount++;
+    }
+
+    // Replaces a range of characters with a character repeated a number of times
+    private void replace(int fromIndex, int toIndex, StyledCharacter character, int count) {
+        StyledString tail = null;
+        if (toIndex < this.size) {
+            tail = new StyledString();
+            tail.append(this, toIndex, this.size);
+        }
+
+        // Remove all characters from the start of the range onwards
+        for (int i = fromIndex; i < this.size; i++) {
+            this.totalWidth -= this.widths[i];
+        }
+        this.size = fromIndex;
+        while (this.runCount > 0 && this.runStarts[this.runCount - 1] >= fromIndex) {
+            this.runCount--;
+        }
+
+        if (count > 0) {
+            Style style = Style.of(character.color, character.formats);
+            this.ensureCapacity(this.size + count);
+            for (int i = 0; i < count; i++) {
+                this.appendChar(character.character, style);
+            }
+        }
+        if (tail != null) {
+            this.append(tail, 0, tail.size);
+        }
+        this.modCount++;
+    }
+
+    // Finds the run that contains the character at an index
+    private int findRun(int index) {
+        int low = 0;
+        int high = this.runCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (this.runStarts[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.chars.length) {
+            int newLength = Math.max(capacity, Math.max(16, this.chars.length * 2));
+            this.chars = Arrays.copyOf(this.chars, newLength);
+            this.widths = Arrays.copyOf(this.widths, newLength);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
     }
 
     private static final boolean canFitOnSign(int width) {
         return width < VirtualLines.LINE_WIDTH_LIMIT;
     }
+
+    /**
+     * A color and formats applied to characters. Styles with a legacy color are
+     * interned, of which there are only a limited number. Styles with a hex color
+     * are created every time, so that they are forgotten together with the strings
+     * using them.
+     */
+    private static final class Style {
+        private static final Map<String, Style> LEGACY_BY_KEY = new HashMap<String, Style>();
+        // Range of chat style codes for which the next style is remembered
+        private static final char FIRST_CODE = '0';
+        private static final char LAST_CODE = 'z';
+
+        public final StyledColor color;
+        public final ChatColor[] formats;
+        public final boolean bold;
+        /** Style-only character with this style */
+        public final StyledCharacter styleChar;
+        // Style after a chat style code, by code, filled in as they are used. Only for interned styles.
+        private final Style[] nextByCode;
+
+        private Style(StyledColor color, ChatColor[] formats, boolean interned) {
+            this.color = color;
+            this.formats = formats;
+            this.styleChar = StyledCharacter.createStyleChar(color, formats);
+            this.bold = this.styleChar.isBold();
+            this.nextByCode = interned ? new Style[LAST_CODE - FIRST_CODE + 1] : null;
+        }
+
+        /**
+         * Gets whether this style has the same color and formats as another style
+         *
+         * @param style Style to compare with
+         * @return True if the styles are the same
+         */
+        public boolean isSameStyle(Style style) {
+            return this == style || (this.color.sameFormat(style.color) && Arrays.equals(this.formats, style.formats));
+        }
+
+        /**
+         * Gets the style after a chat style code is applied to this style
+         *
+         * @param code Chat style code, the character following the style character
+         * @return new style
+         */
+        public Style withCode(char code) {
+            if (this.nextByCode == null || code < FIRST_CODE || code > LAST_CODE) {
+                return this.computeWithCode(code);
+            }
+            Style next = this.nextByCode[code - FIRST_CODE];
+            if (next == null) {
+                next = this.computeWithCode(code);
+                this.nextByCode[code - FIRST_CODE] = next;
+            }
+            return next;
+        }
+
+        private Style computeWithCode(char code) {
+            // Handle legacy chat color characters
+            if ((code >= '0' && code <= '9') || (code >= 'a' && code <= 'f') || (code >= 'A' && code <= 'F')) {
+                return of(StyledColor.byColorCode(code), this.formats);
+            }
+
+            // Other format characters
+            ChatColor cc = ChatColor.getByChar(code);
+            if (cc == ChatColor.RESET) {
+                return of(StyledColor.NONE, StyledCharacter.NO_FORMATS);
+            } else if (cc != null && !LogicUtil.contains(cc, this.formats)) {
+                ChatColor[] newFormats = Arrays.copyOf(this.formats, this.formats.length + 1);
+                newFormats[newFormats.length - 1] = cc;
+                return of(this.color, newFormats);
+            } else {
+                return this;
+            }
+        }
+
+        /**
+         * Gets the style with a color and formats. Styles with a legacy color are created
+         * once, styles with a hex color are created every time.
+         *
+         * @param color Style color
+         * @param formats Style formats
+         * @return style
+         */
+        public static Style of(StyledColor color, ChatColor[] formats) {
+            if (color.isHex()) {
+                return new Style(color, formats.clone(), false);
+            }
+
+            StringBuilder key = new StringBuilder(color.format());
+            for (ChatColor format : formats) {
+                key.append(format.getChar());
+            }
+            synchronized (LEGACY_BY_KEY) {
+                return LEGACY_BY_KEY.computeIfAbsent(key.toString(), unused -> new Style(color, formats.clone(), true));
+            }
+        }
+    }
 }
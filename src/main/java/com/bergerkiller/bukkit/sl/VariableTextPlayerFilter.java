@@ -1,23 +1,26 @@
 package com.bergerkiller.bukkit.sl;
 
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.IntConsumer;
 
 /**
  * Specifies what players to include or what players to
  * exclude when updating a text value. Names used with this
- * class <b>must</b> be all-lowercased.
+ * class <b>must</b> be all-lowercased. Internally players are
+ * identified by their {@link PlayerHandleRegistry player handle},
+ * stored as a bit set indexed by handle.
  */
 public class VariableTextPlayerFilter {
-    private static final VariableTextPlayerFilter ALL = new VariableTextPlayerFilter(true, Collections.emptySet());
-    private static final VariableTextPlayerFilter NONE = new VariableTextPlayerFilter(false, Collections.emptySet());
-    private boolean exclude;
-    private Set<String> names;
+    private static final VariableTextPlayerFilter ALL = new VariableTextPlayerFilter(true, new BitSet());
+    private static final VariableTextPlayerFilter NONE = new VariableTextPlayerFilter(false, new BitSet());
+    private final boolean exclude;
+    private final BitSet handles; // Never modified after construction
 
-    private VariableTextPlayerFilter(boolean exclude, Set<String> names) {
+    private VariableTextPlayerFilter(boolean exclude, BitSet handles) {
         this.exclude = exclude;
-        this.names = names;
+        this.handles = handles;
     }
 
     /**
@@ -27,7 +30,7 @@ public class VariableTextPlayerFilter {
      * @return True if all player names are included
      */
     public boolean isAll() {
-        return this.exclude && this.names.isEmpty();
+        return this.exclude && this.handles.isEmpty();
     }
 
     /**
@@ -37,7 +40,7 @@ public class VariableTextPlayerFilter {
      * @return True if no player names are included
      */
     public boolean isNone() {
-        return !this.exclude && this.names.isEmpty();
+        return !this.exclude && this.handles.isEmpty();
     }
 
     /**
@@ -53,12 +56,29 @@ public class VariableTextPlayerFilter {
 
     /**
      * Gets the set of player names to include or exclude,
-     * depending on {@link #isExcluding()}
+     * depending on {@link #isExcluding()}. Creates a new set,
+     * use {@link #forEachPlayerHandle(IntConsumer)} where possible.
      *
      * @return set of player names to include/exclude
      */
     public Set<String> getPlayerNames() {
-        return this.names;
+        final PlayerHandleRegistry registry = PlayerHandleRegistry.INSTANCE;
+        final Set<String> names = new HashSet<String>(this.handles.cardinality());
+        forEachPlayerHandle(handle -> names.add(registry.getName(handle)));
+        return names;
+    }
+
+    /**
+     * Supplies the player handles to include or exclude to a consumer,
+     * depending on {@link #isExcluding()}
+     *
+     * @param action Consumer of player handles
+     */
+    public void forEachPlayerHandle(IntConsumer action) {
+        BitSet handles = this.handles;
+        for (int handle = handles.nextSetBit(0); handle >= 0; handle = handles.nextSetBit(handle + 1)) {
+            action.accept(handle);
+        }
     }
 
     /**
@@ -68,7 +88,19 @@ public class VariableTextPlayerFilter {
      * @return True if it is in the set
      */
     public boolean containsPlayerName(String name) {
-        return this.names.contains(name);
+        int handle = PlayerHandleRegistry.INSTANCE.findHandle(name);
+        return handle != PlayerHandleRegistry.NO_HANDLE && containsPlayerHandle(handle);
+    }
+
+    /**
+     * Gets whether a given player handle is included or excluded by this filter,
+     * depending on {@link #isExcluding()}
+     *
+     * @param handle Player handle to check
+     * @return True if it is in the set
+     */
+    public boolean containsPlayerHandle(int handle) {
+        return this.handles.get(handle);
     }
 
     /**
@@ -96,11 +128,7 @@ public class VariableTextPlayerFilter {
      * @return VariableTextPlayerFilter
      */
     public static VariableTextPlayerFilter only(Set<String> includedPlayerNames) {
-        if (includedPlayerNames.isEmpty()) {
-            return NONE;
-        } else {
-            return new VariableTextPlayerFilter(false, includedPlayerNames);
-        }
+        return onlyHandles(toHandles(includedPlayerNames));
     }
 
     /**
@@ -110,7 +138,19 @@ public class VariableTextPlayerFilter {
      * @return VariableTextPlayerFilter
      */
     public static VariableTextPlayerFilter only(String playerName) {
-        return new VariableTextPlayerFilter(false, Collections.singleton(playerName));
+        return onlyHandle(PlayerHandleRegistry.INSTANCE.getHandle(playerName));
+    }
+
+    /**
+     * Filter that specifies only the given single player handle is included
+     *
+     * @param playerHandle Handle of the player to include
+     * @return VariableTextPlayerFilter
+     */
+    public static VariableTextPlayerFilter onlyHandle(int playerHandle) {
+        BitSet handles = new BitSet(playerHandle + 1);
+        handles.set(playerHandle);
+        return new VariableTextPlayerFilter(false, handles);
     }
 
     /**
@@ -120,11 +160,39 @@ public class VariableTextPlayerFilter {
      * @return VariableTextPlayerFilter
      */
     public static VariableTextPlayerFilter allExcept(Set<String> excludedPlayerNames) {
-        if (excludedPlayerNames.isEmpty()) {
+        return allExceptHandles(toHandles(excludedPlayerNames));
+    }
+
+    /**
+     * Filter that specifies all player, except a few, should be included
+     *
+     * @param excludedPlayerHandles Handles of the players to exclude. The bit set
+     *                              is stored in the filter, and must not be modified afterwards.
+     * @return VariableTextPlayerFilter
+     */
+    public static VariableTextPlayerFilter allExceptHandles(BitSet excludedPlayerHandles) {
+        if (excludedPlayerHandles.isEmpty()) {
             return ALL;
         } else {
-            return new VariableTextPlayerFilter(true, excludedPlayerNames);
+            return new VariableTextPlayerFilter(true, excludedPlayerHandles);
+        }
+    }
+
+    private static VariableTextPlayerFilter onlyHandles(BitSet includedPlayerHandles) {
+        if (includedPlayerHandles.isEmpty()) {
+            return NONE;
+        } else {
+            return new VariableTextPlayerFilter(false, includedPlayerHandles);
+        }
+    }
+
+    private static BitSet toHandles(Set<String> playerNames) {
+        PlayerHandleRegistry registry = PlayerHandleRegistry.INSTANCE;
+        BitSet handles = new BitSet();
+        for (String name : playerNames) {
+            handles.set(registry.getHandle(name));
         }
+        return handles;
     }
 
     /**
@@ -141,30 +209,29 @@ public class VariableTextPlayerFilter {
             return combineExcludingWith(b, a);
         } else {
             // Both including filters, create an intersection
-            HashSet<String> combined = new HashSet<String>(a.names);
-            combined.retainAll(b.names);
-            return only(combined);
+            BitSet combined = (BitSet) a.handles.clone();
+            combined.and(b.handles);
+            return onlyHandles(combined);
         }
     }
 
     private static VariableTextPlayerFilter combineExcludingWith(VariableTextPlayerFilter excl, VariableTextPlayerFilter b) {
         if (b.isExcluding()) {
             // One excluding filter with names of excl and b combined
-            if (excl.names.isEmpty()) {
+            if (excl.handles.isEmpty()) {
                 return b;
-            } else if (b.names.isEmpty()) {
+            } else if (b.handles.isEmpty()) {
                 return excl;
             } else {
-                HashSet<String> combined = new HashSet<String>(excl.names.size() + b.names.size());
-                combined.addAll(excl.names);
-                combined.addAll(b.names);
+                BitSet combined = (BitSet) excl.handles.clone();
+                combined.or(b.handles);
                 return new VariableTextPlayerFilter(true, combined);
             }
         } else {
             // One including filter with names of b not in excl
-            HashSet<String> combined = new HashSet<String>(b.names);
-            combined.removeAll(excl.names);
-            return only(combined);
+            BitSet combined = (BitSet) b.handles.clone();
+            combined.andNot(excl.handles);
+            return onlyHandles(combined);
         }
     }
 }
@@ -8,6 +8,7 @@ import com.bergerkiller.bukkit.common.nbt.CommonTag;
 import com.bergerkiller.bukkit.common.nbt.CommonTagCompound;
 import com.bergerkiller.bukkit.common.nbt.CommonTagList;
 import com.bergerkiller.bukkit.common.wrappers.ChatText;
+import com.bergerkiller.bukkit.sl.util.WeightedLruCache;
 
 import java.util.function.Supplier;
 import java.util.logging.Level;
@@ -18,6 +19,10 @@ public class VirtualLines {
     public static final int LINE_COUNT = 4;
     private final SignSideMap<SignSideLines> lines = new SignSideMap<>();
     private boolean changed = false;
+    private boolean frontChanged = false;
+    private boolean backChanged = false;
+    private VirtualSign owner = null;
+    private boolean frozen = false;
 
     @Deprecated
     public VirtualLines(String[] frontLines, String[] backLines) {
@@ -37,6 +42,39 @@ public class VirtualLines {
         }
     }
 
+    /**
+     * Sets the virtual sign these lines are displayed on. The sign is
+     * scheduled for an update when these lines change.
+     *
+     * @param owner Virtual Sign owner
+     */
+    void setOwner(VirtualSign owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Creates a copy of these lines that can not be changed. Changing the original
+     * lines afterwards does not change the copy, so it can be read from any thread.
+     *
+     * @return read-only copy of these lines
+     */
+    VirtualLines frozenCopy() {
+        VirtualLines copy = new VirtualLines(this);
+        copy.frozen = true;
+        return copy;
+    }
+
+    /**
+     * Gets a number that changes every time a line of these lines is set.
+     * A copy of these lines has the same version as the original until
+     * either of them is changed.
+     *
+     * @return version of these lines
+     */
+    int getVersion() {
+        return this.lines.front().version + this.lines.back().version;
+    }
+
     public boolean isDifferentThanMetadata(CommonTagCompound metadata) {
         if (CommonCapabilities.HAS_SIGN_BACK_TEXT) {
             // >= 1.20
@@ -96,14 +134,22 @@ public class VirtualLines {
     }
 
     public void set(SignSide side, int index, String value) {
+        checkNotFrozen();
         if (this.lines.side(side).setText(index, value)) {
-            this.changed = true;
+            this.setChanged(side);
         }
     }
 
     public void set(SignSide side, int index, Line line) {
+        checkNotFrozen();
         if (this.lines.side(side).setLine(index, line)) {
-            this.changed = true;
+            this.setChanged(side);
+        }
+    }
+
+    private void checkNotFrozen() {
+        if (this.frozen) {
+            throw new UnsupportedOperationException("Read-only copy of lines");
         }
     }
 
@@ -119,12 +165,61 @@ public class VirtualLines {
         return this.changed;
     }
 
+    /**
+     * Computes a fingerprint of the text on both sides of the sign. Lines that display
+     * the same text have the same fingerprint.
+     *
+     * @return fingerprint of all lines
+     */
+    public long getFingerprint() {
+        long fingerprint = 0L;
+        SignSideLines front = this.lines.front();
+        SignSideLines back = this.lines.back();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            fingerprint = fingerprint * 0x9E3779B97F4A7C15L + front.getLine(i).fingerprint;
+        }
+        for (int i = 0; i < LINE_COUNT; i++) {
+            fingerprint = fingerprint * 0x9E3779B97F4A7C15L + back.getLine(i).fingerprint;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Gets whether the lines of one side of the sign changed
+     *
+     * @param side Side of the sign
+     * @return True if the lines of this side changed
+     */
+    public boolean hasChanged(SignSide side) {
+        return side.isFront() ? this.frontChanged : this.backChanged;
+    }
+
     public void setChanged() {
         setChanged(true);
     }
 
     public void setChanged(boolean changed) {
-        this.changed = changed;
+        this.frontChanged = changed;
+        this.backChanged = changed;
+        this.markChanged(changed);
+    }
+
+    private void setChanged(SignSide side) {
+        if (side.isFront()) {
+            this.frontChanged = true;
+        } else {
+            this.backChanged = true;
+        }
+        this.markChanged(true);
+    }
+
+    private void markChanged(boolean changed) {
+        if (changed && !this.changed && this.owner != null) {
+            this.changed = true;
+            this.owner.scheduleUpdate();
+        } else {
+            this.changed = changed;
+        }
     }
 
     @Override
@@ -137,13 +232,23 @@ public class VirtualLines {
 
     /**
      * Tracks the text contents of a line, the json representation of it,
-     * and whether this text was changed from the text on the physical sign
+     * and whether this text was changed from the text on the physical sign.
+     * Also stores a 64-bit fingerprint of the text, so that lines can be compared
+     * without creating the json representation.
      */
     public static final class Line {
         public static final Line UNSET = new Line(ChatText.empty(), true);
+        // Lines created from text that differs from the sign, shared by all signs and players
+        // that display the same text. Weighs about 2 bytes per character for the text and 4
+        // for the NBT, plus the objects themselves.
+        private static final WeightedLruCache<String, Line> TEXT_LINE_CACHE = new WeightedLruCache<>(
+                4L * 1024L * 1024L, (text, line) -> 96 + 6 * text.length());
 
         public final String text;
         public final boolean sameAsSign;
+        public final long fingerprint;
+        // Whether the NBT is created from the text alone, so equal text means equal NBT
+        private final boolean fingerprintExact;
         private volatile CommonTag cachedNBT;
         private volatile Supplier<CommonTag> toNBTFunc;
 
@@ -161,18 +266,67 @@ public class VirtualLines {
         }
 
         public Line(ChatText text, boolean sameAsSign) {
-            this(text.getMessage(), sameAsSign, text::getNBT);
+            this(text.getMessage(), sameAsSign, text::getNBT, false);
         }
 
         public Line(String text, boolean sameAsSign) {
-            this(text, sameAsSign, () -> ChatText.fromMessage(text).getNBT());
+            this(text, sameAsSign, () -> ChatText.fromMessage(text).getNBT(), true);
         }
 
-        private Line(String text, boolean sameAsSign, Supplier<CommonTag> toNBTFunc) {
+        private Line(String text, boolean sameAsSign, Supplier<CommonTag> toNBTFunc, boolean fingerprintExact) {
             this.text = text;
             this.sameAsSign = sameAsSign;
+            this.fingerprint = computeFingerprint(text);
+            this.fingerprintExact = fingerprintExact;
             this.toNBTFunc = toNBTFunc;
         }
+
+        /**
+         * Gets a line displaying text that differs from the text on the sign. Lines are
+         * cached, so that the same text shares the same line and NBT representation.
+         *
+         * @param text Text to display
+         * @return line, with sameAsSign false
+         */
+        public static Line fromText(String text) {
+            synchronized (TEXT_LINE_CACHE) {
+                return TEXT_LINE_CACHE.computeIfAbsent(text, t -> new Line(t, false));
+            }
+        }
+
+        /**
+         * Gets whether this line displays the same text and formatting as another line.
+         * Lines with a different fingerprint are always different. The NBT is only compared
+         * when the fingerprints are equal, and one of the lines was created from
+         * formatted text that the legacy text can't fully represent.
+         *
+         * @param other Line to compare with
+         * @return True if the lines display the same content
+         */
+        public boolean isSameContent(Line other) {
+            if (this == other) {
+                return true;
+            } else if (this.fingerprint != other.fingerprint) {
+                return false;
+            } else if (this.fingerprintExact && other.fingerprintExact) {
+                return this.text.equals(other.text);
+            } else {
+                return this.toNBT().equals(other.toNBT());
+            }
+        }
+
+        private static long computeFingerprint(String text) {
+            // FNV-1a over the characters, followed by a final mix of the bits
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < text.length(); i++) {
+                h ^= text.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= (h >>> 33);
+            h *= 0xff51afd7ed558ccdL;
+            h ^= (h >>> 33);
+            return h;
+        }
     }
 
     /**
@@ -199,6 +353,12 @@ public class VirtualLines {
         private final Line[] lines;
         private final String[] textLines;
         private boolean sameAsSign;
+        // Incremented every time a line changes, to invalidate the messages rewrite
+        private volatile int version = 0;
+        // Sign update messages with these lines applied, for the current version. Shared by all
+        // players that see these lines. The messages of the sign itself only change when the sign
+        // text changes, and then these lines are updated too, which changes the version.
+        private volatile MessagesRewrite messagesRewrite = null;
 
         public SignSideLines(Line[] lines) {
             if (lines.length < LINE_COUNT) {
@@ -238,9 +398,10 @@ public class VirtualLines {
 
         public boolean setLine(int index, Line line) {
             Line prevLine = this.lines[index];
-            boolean changed = !prevLine.toNBT().equals(line.toNBT());
+            boolean changed = !prevLine.isSameContent(line);
             this.lines[index] = line;
             this.textLines[index] = line.text;
+            this.version++;
 
             if (!line.sameAsSign) {
                 this.sameAsSign = false;
@@ -262,9 +423,10 @@ public class VirtualLines {
             if (text.equals(this.textLines[index])) {
                 return false;
             } else {
-                this.lines[index] = new Line(text, false);
+                this.lines[index] = Line.fromText(text);
                 this.textLines[index] = text;
                 this.sameAsSign =false;
+                this.version++;
                 return true;
             }
         }
@@ -306,13 +468,7 @@ public class VirtualLines {
                 return false; // Bad packet?
             }
 
-            for (int i = 0; i < VirtualLines.LINE_COUNT; i++) {
-                Line line = getLine(i);
-                if (!line.sameAsSign && !line.toNBT().equals(messages.get(i))) {
-                    return true;
-                }
-            }
-            return false;
+            return getMessagesRewrite(messages).different;
         }
 
         /**
@@ -331,13 +487,8 @@ public class VirtualLines {
             CommonTagCompound sign_text = metadata.createCompound(keyName);
             CommonTagList messages = sign_text.createList("messages");
             if (messages.size() == VirtualLines.LINE_COUNT) {
-                // Set lines
-                for (int i = 0; i < VirtualLines.LINE_COUNT; i++) {
-                    Line line = getLine(i);
-                    if (!line.sameAsSign) {
-                        messages.set(i, line.toNBT());
-                    }
-                }
+                // Set lines, every packet gets its own copy as packets can still change it
+                sign_text.put("messages", getMessagesRewrite(messages).output.clone());
             } else {
                 // Clear and re-add
                 messages.clear();
@@ -347,9 +498,21 @@ public class VirtualLines {
             }
         }
 
+        private MessagesRewrite getMessagesRewrite(CommonTagList messages) {
+            MessagesRewrite rewrite = this.messagesRewrite;
+            if (rewrite == null || rewrite.version != this.version) {
+                this.messagesRewrite = rewrite = new MessagesRewrite(this, messages);
+            }
+            return rewrite;
+        }
+
         @Override
         public SignSideLines clone() {
-            return new SignSideLines(this.lines.clone(), this.textLines.clone(), this.sameAsSign);
+            SignSideLines clone = new SignSideLines(this.lines.clone(), this.textLines.clone(), this.sameAsSign);
+            // The copy shows the same lines, so the messages rewrite can be re-used
+            clone.version = this.version;
+            clone.messagesRewrite = this.messagesRewrite;
+            return clone;
         }
 
         public static SignSideLines getLines(SignChangeTracker tracker, SignSide side) {
@@ -373,6 +536,34 @@ public class VirtualLines {
             }
         }
 
+        /**
+         * The messages of a sign update with the changed lines applied, for a version
+         * of the lines. Must not be modified, as it is shared between packets.
+         */
+        private static final class MessagesRewrite {
+            public final int version;
+            public final CommonTagList output;
+            public final boolean different;
+
+            public MessagesRewrite(SignSideLines lines, CommonTagList messages) {
+                this.version = lines.version;
+                this.output = messages.clone();
+
+                boolean different = false;
+                for (int i = 0; i < VirtualLines.LINE_COUNT; i++) {
+                    Line line = lines.getLine(i);
+                    if (!line.sameAsSign) {
+                        CommonTag nbt = line.toNBT();
+                        if (!nbt.equals(this.output.get(i))) {
+                            this.output.set(i, nbt);
+                            different = true;
+                        }
+                    }
+                }
+                this.different = different;
+            }
+        }
+
         private interface SignTextGetter {
             SignSideLines getFrontLines(SignChangeTracker tracker);
             SignSideLines getBackLines(SignChangeTracker tracker);
@@ -384,7 +575,7 @@ public class VirtualLines {
                 Line[] lines = new Line[textLines.length];
                 for (int i = 0; i < textLines.length; i++) {
                     final ChatText formattedLine = formattedLines[i];
-                    lines[i] = new Line(textLines[i], true, formattedLine::getNBT);
+                    lines[i] = new Line(textLines[i], true, formattedLine::getNBT, false);
                 }
                 return new SignSideLines(lines, textLines, true);
             }
@@ -1,19 +1,19 @@
 package com.bergerkiller.bukkit.sl;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
 
 import com.bergerkiller.bukkit.common.internal.CommonCapabilities;
-import com.bergerkiller.bukkit.common.utils.ChunkUtil;
-import com.bergerkiller.bukkit.common.utils.LogicUtil;
 import com.bergerkiller.bukkit.sl.API.events.SignVariablesDetectEvent;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.block.Sign;
 import org.bukkit.entity.Player;
 
@@ -26,9 +26,10 @@ import com.bergerkiller.bukkit.common.protocol.CommonPacket;
 import com.bergerkiller.bukkit.common.utils.BlockUtil;
 import com.bergerkiller.bukkit.common.utils.EntityUtil;
 import com.bergerkiller.bukkit.common.utils.MaterialUtil;
-import com.bergerkiller.bukkit.common.utils.PacketUtil;
 import com.bergerkiller.bukkit.common.utils.PlayerUtil;
 import com.bergerkiller.bukkit.sl.API.Variables;
+import com.bergerkiller.bukkit.sl.util.IntObjectHashMap;
+import com.bergerkiller.bukkit.sl.util.TimingWheel;
 
 /**
  * Stores additional information about sign text, and keeps track of sign text, for each player individually.
@@ -39,17 +40,47 @@ public class VirtualSign extends VirtualSignStore {
     private final OfflineBlock location;
     private SignChangeTracker sign;
     private final SignSideMap<VirtualLines.SignSideLines> oldLines = new SignSideMap<>();
-    private final Map<String, VirtualLines> playerlinesMap = new HashMap<>();
-    private final List<VirtualLines> playerlinesValues = new ArrayList<>();
+    private final IntObjectHashMap<VirtualLines> playerlinesMap = new IntObjectHashMap<>();
+    private boolean playerlinesMapChanged = false;
     private final VirtualLines defaultlines;
-    private final Map<VirtualLines, Object> lastPlayersInRange = new HashMap<VirtualLines, Object>();
-    private int signcheckcounter;
+    // Read-only copies of the default and per-player lines, read without locking by the network threads
+    private volatile VirtualLines publishedDefaultlines;
+    private volatile IntObjectHashMap<VirtualLines> publishedPlayerlinesMap = new IntObjectHashMap<>();
+    private final Set<Player> viewers = new HashSet<Player>();
+    private final Set<Player> enteredViewers = new HashSet<Player>();
+    // Fingerprint of the lines last sent to a player, by player handle
+    private final IntObjectHashMap<Long> sentFingerprints = new IntObjectHashMap<>();
+    // Handles of the players sent this sign with a chunk, set by the network threads
+    private final BitSet sentWithChunk = new BitSet();
+    // Viewers that were not sent changes to a side of the sign they could not see
+    private final Map<Player, SignSide> hiddenChangeViewers = new HashMap<Player, SignSide>();
+    // Viewers that were not sent changes yet, because of the update rate at their distance
+    private final Set<Player> throttledViewers = new HashSet<Player>();
+    // Ticks until the first throttled viewer can be sent the changes, found while resending lines
+    private int throttledUpdateDelay = 0;
+    // Direction the front of the sign faces, zero if unknown or there is only a front
+    private double facingX = 0.0, facingZ = 0.0;
     private boolean hasBeenVerified;
     private boolean hasVariablesOnSign;
     private boolean _isMidLinkSign;
-    private static int signcheckcounterinitial = 0;
-    private static final int SIGN_CHECK_INTERVAL = 100;
-    private static final int SIGN_CHECK_INTERVAL_NOVAR = 400;
+    /** Whether this sign is currently stored in the store, and should be updated */
+    boolean isStored = false;
+    /** Schedules the next routine verification of this sign, managed by the store */
+    final TimingWheel.Entry<VirtualSign> verifyEntry = new TimingWheel.Entry<>(this);
+    /** Schedules a later update of this sign, for the viewers sent changes less often */
+    final TimingWheel.Entry<VirtualSign> delayedUpdateEntry = new TimingWheel.Entry<>(this);
+    /** Whether this sign is queued to be verified by the store, set by the network threads */
+    final AtomicBoolean verifyQueued = new AtomicBoolean();
+    /** Packets of this sign queued on the packet workers */
+    final SignPacketWorkers.SignPackets queuedPackets = new SignPacketWorkers.SignPackets(this);
+    /**
+     * Maximum distance (in blocks) a player can be from a sign on the x/z axis to be sent updates
+     */
+    public static final int VIEW_RANGE = 60;
+    /**
+     * Distance (in blocks) from the plane of a sign in which both sides of the sign are visible
+     */
+    private static final double SIDE_VISIBLE_MARGIN = 1.0;
 
     protected VirtualSign(Block signLocation, VirtualLines.SignSideLines frontLines, VirtualLines.SignSideLines backLines) {
         if (frontLines == null) {
@@ -64,8 +95,10 @@ public class VirtualSign extends VirtualSignStore {
         this.oldLines.setFront(frontLines);
         this.oldLines.setBack((CommonCapabilities.HAS_SIGN_BACK_TEXT ? backLines : VirtualLines.SignSideLines.UNSUPPORTED));
         this.defaultlines = new VirtualLines(this.oldLines.front(), this.oldLines.back());
+        this.defaultlines.setOwner(this);
+        this.publishedDefaultlines = this.defaultlines.frozenCopy();
         this._isMidLinkSign = false;
-        this.initCheckCounter();
+        this.hasVariablesOnSign = this.hasVariablesRefresh();
         this.scheduleVerify();
     }
 
@@ -76,22 +109,11 @@ public class VirtualSign extends VirtualSignStore {
         this.location = OfflineBlock.of(this.sign.getBlock());
         this.blockLocation = new BlockLocation(this.sign.getBlock());
         this.defaultlines = new VirtualLines(this.oldLines.front().clone(), this.oldLines.back().clone());
+        this.defaultlines.setOwner(this);
+        this.publishedDefaultlines = this.defaultlines.frozenCopy();
         this._isMidLinkSign = false;
-        this.initCheckCounter();
-        this.scheduleVerify();
-    }
-
-    private void initCheckCounter() {
-        // By setting a check counter this way we only check a single sign every tick when possible
-        // This reduces bad tick lag that can occur otherwise
-        ++signcheckcounterinitial;
-        this.signcheckcounter = signcheckcounterinitial;
         this.hasVariablesOnSign = this.hasVariablesRefresh();
-        if (this.hasVariablesOnSign) {
-            this.signcheckcounter %= SIGN_CHECK_INTERVAL;
-        } else {
-            this.signcheckcounter %= SIGN_CHECK_INTERVAL_NOVAR;
-        }
+        this.scheduleVerify();
     }
 
     public void remove() {
@@ -100,18 +122,69 @@ public class VirtualSign extends VirtualSignStore {
     }
 
     public synchronized void resetLines() {
-        this.playerlinesMap.clear();
-        this.playerlinesValues.clear();
+        if (!this.playerlinesMap.isEmpty()) {
+            this.playerlinesMap.forEach((playerHandle, lines) -> trackPlayerLines(this, playerHandle, false));
+            this.playerlinesMap.clear();
+            this.onPlayerlinesMapChanged();
+        }
     }
 
     public void resetLines(Player player) {
-        resetLines(player.getName().toLowerCase());
+        resetLines(PlayerHandleRegistry.INSTANCE.getHandle(player));
+    }
+
+    public void resetLines(String playerName) {
+        int playerHandle = PlayerHandleRegistry.INSTANCE.findHandle(playerName);
+        if (playerHandle != PlayerHandleRegistry.NO_HANDLE) {
+            resetLines(playerHandle);
+        }
     }
 
-    public synchronized void resetLines(String playerName) {
-        VirtualLines lines = this.playerlinesMap.remove(playerName);
-        if (lines != null) {
-            this.playerlinesValues.remove(lines);
+    /**
+     * Removes the lines of text specific for a single player
+     *
+     * @param playerHandle Handle of the player
+     */
+    public synchronized void resetLines(int playerHandle) {
+        if (this.playerlinesMap.remove(playerHandle) != null) {
+            trackPlayerLines(this, playerHandle, false);
+            this.onPlayerlinesMapChanged();
+        }
+    }
+
+    private void onPlayerlinesMapChanged() {
+        this.playerlinesMapChanged = true;
+        this.scheduleUpdate();
+    }
+
+    // Publishes read-only copies of the lines that changed, or were added or removed, since the last update
+    private synchronized void publishLines() {
+        if (this.publishedDefaultlines.getVersion() != this.defaultlines.getVersion()) {
+            this.publishedDefaultlines = this.defaultlines.frozenCopy();
+        }
+
+        final IntObjectHashMap<VirtualLines> published = this.publishedPlayerlinesMap;
+        final boolean[] changed = new boolean[] { this.playerlinesMapChanged };
+        if (!changed[0]) {
+            this.playerlinesMap.forEach((playerHandle, lines) -> {
+                VirtualLines publishedLines = published.get(playerHandle);
+                if (publishedLines == null || publishedLines.getVersion() != lines.getVersion()) {
+                    changed[0] = true;
+                }
+            });
+        }
+        if (changed[0]) {
+            // Lines that did not change keep the same copy
+            IntObjectHashMap<VirtualLines> newPublished = new IntObjectHashMap<>();
+            this.playerlinesMap.forEach((playerHandle, lines) -> {
+                VirtualLines publishedLines = published.get(playerHandle);
+                if (publishedLines == null || publishedLines.getVersion() != lines.getVersion()) {
+                    publishedLines = lines.frozenCopy();
+                }
+                newPublished.put(playerHandle, publishedLines);
+            });
+            this.playerlinesMapChanged = false;
+            this.publishedPlayerlinesMap = newPublished;
         }
     }
 
@@ -130,20 +203,49 @@ public class VirtualSign extends VirtualSignStore {
      *                   Specifying null will return the default lines.
      * @return lines for this player
      */
-    public synchronized VirtualLines getLines(String playerName) {
+    public VirtualLines getLines(String playerName) {
         if (playerName == null) {
             return getLines();
         }
-        VirtualLines lines = playerlinesMap.get(playerName);
+        return getLines(PlayerHandleRegistry.INSTANCE.getHandle(playerName));
+    }
+
+    /**
+     * Gets the lines of text specific for a single player
+     *
+     * @param playerHandle Handle of the player
+     * @return lines for this player
+     */
+    public synchronized VirtualLines getLines(int playerHandle) {
+        VirtualLines lines = playerlinesMap.get(playerHandle);
         if (lines == null) {
             lines = new VirtualLines(defaultlines);
+            lines.setOwner(this);
             lines.setChanged(true);
-            playerlinesMap.put(playerName, lines);
-            playerlinesValues.add(lines);
+            playerlinesMap.put(playerHandle, lines);
+            trackPlayerLines(this, playerHandle, true);
+            this.playerlinesMapChanged = true;
         }
         return lines;
     }
 
+    /**
+     * Gets the lines of text for a single player as they were last published, which
+     * happens when this sign is updated. Does not lock or allocate, and is safe to call
+     * from any thread. Unlike {@link #getLines(int)} this does not create new lines for
+     * the player, instead the default lines are returned.<br>
+     * <br>
+     * The lines returned are a read-only copy, and are not changed when the lines
+     * of the sign change afterwards.
+     *
+     * @param playerHandle Handle of the player, or {@link PlayerHandleRegistry#NO_HANDLE}
+     * @return lines for this player
+     */
+    public VirtualLines getPublishedLines(int playerHandle) {
+        VirtualLines lines = this.publishedPlayerlinesMap.get(playerHandle);
+        return (lines == null) ? this.publishedDefaultlines : lines;
+    }
+
     /**
      * Gets the lines of text specific for a single player
      *
@@ -154,7 +256,7 @@ public class VirtualSign extends VirtualSignStore {
         if (player == null) {
             return getLines();
         }
-        return getLines(player.getName().toLowerCase());
+        return getLines(PlayerHandleRegistry.INSTANCE.getHandle(player));
     }
 
     public VirtualLines getLines() {
@@ -202,36 +304,34 @@ public class VirtualSign extends VirtualSignStore {
 //        System.out.println("Set line "+index+" to "+value+" for "+(players==null?null:players.length));
         if (forPlayerFilter.isAll()) {
             //Set all lines to this value at this index
-            playerlinesValues.forEach(lines -> lines.set(side, index, value));
+            playerlinesMap.values().forEach(lines -> lines.set(side, index, value));
             getLines().set(side, index, value);
         } else if (forPlayerFilter.isExcluding()) {
             // All except some player names
 
             // Make sure to first create additional by-player instances for players
             // excluded, that are missing in the mapping
-            for (String player : forPlayerFilter.getPlayerNames()) {
-                getLines(player);
-            }
+            forPlayerFilter.forEachPlayerHandle(this::getLines);
 
             // Update all player lines that are missing from the filter
-            for (Map.Entry<String, VirtualLines> entry : playerlinesMap.entrySet()) {
-                String name = entry.getKey();
-                if (!forPlayerFilter.containsPlayerName(name)) {
-                    VirtualLines lines = entry.getValue();
+            final PlayerHandleRegistry registry = PlayerHandleRegistry.INSTANCE;
+            playerlinesMap.forEach((playerHandle, lines) -> {
+                if (!forPlayerFilter.containsPlayerHandle(playerHandle)) {
                     lines.set(side, index, value);
-                    this.sendLines(lines, SignLink.plugin.getPlayerByLowercase(name));
+                    this.sendLines(lines, registry.getPlayer(playerHandle));
                 }
-            }
+            });
 
             // Update default value
             getLines().set(side, index, value);
         } else {
             // Only for some player names, do not update default
-            for (String player : forPlayerFilter.getPlayerNames()) {
-                VirtualLines lines = getLines(player);
+            final PlayerHandleRegistry registry = PlayerHandleRegistry.INSTANCE;
+            forPlayerFilter.forEachPlayerHandle(playerHandle -> {
+                VirtualLines lines = getLines(playerHandle);
                 lines.set(side, index, value);
-                this.sendLines(lines, SignLink.plugin.getPlayerByLowercase(player));
-            }
+                this.sendLines(lines, registry.getPlayer(playerHandle));
+            });
         }
     }
 
@@ -261,7 +361,8 @@ public class VirtualSign extends VirtualSignStore {
      * @return Line for this player
      */
     public synchronized String getLine(SignSide side, int index, String player) {
-        return this.playerlinesMap.getOrDefault(player, this.defaultlines).get(side, index);
+        int playerHandle = PlayerHandleRegistry.INSTANCE.findHandle(player);
+        return this.playerlinesMap.getOrDefault(playerHandle, this.defaultlines).get(side, index);
     }
 
     @Deprecated
@@ -385,6 +486,7 @@ public class VirtualSign extends VirtualSignStore {
         }
 
         // Detect misc. changes in orientation/lines of text
+        updateFacing();
         detectLineChanges();
         return true;
     }
@@ -417,6 +519,7 @@ public class VirtualSign extends VirtualSignStore {
 
             // Check for changes to the text on the sign (external cause)
             this.sign = SignChangeTracker.track(signAtBlock);
+            updateFacing();
             detectLineChanges();
         }
         return true;
@@ -426,10 +529,13 @@ public class VirtualSign extends VirtualSignStore {
         if (detectLineChangesOfSide(SignSide.FRONT) || detectLineChangesOfSide(SignSide.BACK)) {
             boolean hadVariables = this.hasVariablesOnSign;
             this.hasVariablesOnSign = this.hasVariablesRefresh();
+            if (hadVariables != this.hasVariablesOnSign) {
+                updateVerifySchedule(this);
+            }
 
             // It's possible variables were added and/or removed. Make sure to update the sign.
             if (hadVariables || this.hasVariablesOnSign || this._isMidLinkSign) {
-                resendLines(LogicUtil.alwaysTruePredicate());
+                resendLines(false);
             }
         }
     }
@@ -445,7 +551,7 @@ public class VirtualSign extends VirtualSignStore {
         for (int i = 0; i < 4; i++) {
             final VirtualLines.Line oldLine = oldLines.getLine(i);
             final VirtualLines.Line newLine = newLines.getLine(i);
-            if (oldLine.toNBT().equals(newLine.toNBT())) {
+            if (oldLine.isSameContent(newLine)) {
                 continue; // Unchanged
             }
 
@@ -458,7 +564,7 @@ public class VirtualSign extends VirtualSignStore {
             // Update all lines for all viewers to this new line with sameAsSign = true
             final int lineIdx = i;
             oldLines.setLine(lineIdx, newLine);
-            playerlinesValues.forEach(lines -> lines.set(side, lineIdx, newLine));
+            playerlinesMap.values().forEach(lines -> lines.set(side, lineIdx, newLine));
             getLines().set(side, lineIdx, newLine);
 
             // See if the new text contains a variable
@@ -488,18 +594,100 @@ public class VirtualSign extends VirtualSignStore {
         }
 
         this.sign = SignChangeTracker.track(sign);
+        updateFacing();
         return true;
     }
 
+    // Reads the direction the front of the sign faces, used to find what side players can see
+    private void updateFacing() {
+        this.facingX = 0.0;
+        this.facingZ = 0.0;
+        if (!CommonCapabilities.HAS_SIGN_BACK_TEXT || this.sign == null) {
+            return;
+        }
+
+        BlockFace face = SignSide.FRONT.getFacing(this.sign.getBlock());
+        if (face == null) {
+            return;
+        }
+        double length = Math.sqrt(face.getModX() * face.getModX() + face.getModZ() * face.getModZ());
+        if (length > 0.0) {
+            this.facingX = face.getModX() / length;
+            this.facingZ = face.getModZ() / length;
+        }
+    }
+
+    /**
+     * Gets whether a player can see a side of this sign, judging by what side of
+     * the sign the player is on. Close to the sign both sides are visible.
+     *
+     * @param player Player
+     * @param side Side of the sign
+     * @return True if the side can be seen by the player
+     */
+    public boolean canSeeSide(Player player, SignSide side) {
+        if (this.facingX == 0.0 && this.facingZ == 0.0) {
+            return true;
+        }
+        Location loc = player.getLocation();
+        double distance = (loc.getX() - (this.getX() + 0.5)) * this.facingX
+                        + (loc.getZ() - (this.getZ() + 0.5)) * this.facingZ;
+        return side.isFront() ? (distance >= -SIDE_VISIBLE_MARGIN) : (distance <= SIDE_VISIBLE_MARGIN);
+    }
+
     public void forPlayersInRange(Consumer<Player> action) {
-        // Filter result of getChunkViewers()
-        for (Player viewer : ChunkUtil.getChunkViewers(getWorld(), getChunkX(), getChunkZ())) {
-            if (EntityUtil.isNearBlock(viewer, this.getX(), this.getZ(), 60)) {
+        // Players that can't see the chunk yet will receive the lines with the chunk
+        for (Player viewer : this.viewers) {
+            if (PlayerUtil.isChunkVisible(viewer, this.getChunkX(), this.getChunkZ())) {
                 action.accept(viewer);
             }
         }
     }
 
+    /**
+     * Gets whether a player is within range of this sign, as tracked by the store.
+     * Does not check whether the player can see the chunk of the sign.
+     *
+     * @param player Player
+     * @return True if the player is a viewer of this sign
+     */
+    boolean isViewer(Player player) {
+        return this.viewers.contains(player);
+    }
+
+    /**
+     * Called by the store when a player comes within range of this sign.
+     * The current lines are sent to this player the next time this sign updates.
+     *
+     * @param player Player that entered
+     */
+    void onViewerEntered(Player player) {
+        this.viewers.add(player);
+        this.enteredViewers.add(player);
+        if (this.hasVariablesOnSign || this._isMidLinkSign) {
+            this.scheduleUpdate();
+        }
+    }
+
+    /**
+     * Called by the store when a player is no longer within range of this sign,
+     * or went offline.
+     *
+     * @param player Player that left
+     */
+    void onViewerLeft(Player player) {
+        this.viewers.remove(player);
+        this.enteredViewers.remove(player);
+        this.hiddenChangeViewers.remove(player);
+        this.throttledViewers.remove(player);
+
+        // When the player still has the chunk, it still displays the lines last sent
+        // Otherwise the lines are sent again with the chunk, so forget them
+        if (!player.isOnline() || !PlayerUtil.isChunkVisible(player, this.getChunkX(), this.getChunkZ())) {
+            this.sentFingerprints.remove(PlayerHandleRegistry.INSTANCE.getHandle(player));
+        }
+    }
+
     public boolean isInRange(Player player) {
         if (!PlayerUtil.isChunkVisible(player, this.getChunkX(), this.getChunkZ())) {
             return false;
@@ -507,7 +695,7 @@ public class VirtualSign extends VirtualSignStore {
         if (player.getWorld() != this.getWorld()) {
             return false;
         }
-        return EntityUtil.isNearBlock(player, this.getX(), this.getZ(), 60);
+        return EntityUtil.isNearBlock(player, this.getX(), this.getZ(), VIEW_RANGE);
     }
 
     @Override
@@ -570,6 +758,14 @@ public class VirtualSign extends VirtualSignStore {
      */
     public void scheduleVerify() {
         this.hasBeenVerified = false;
+        queueUpdate(this);
+    }
+
+    /**
+     * Schedules this sign to be updated the next tick, sending changed lines to players
+     */
+    public void scheduleUpdate() {
+        queueUpdate(this);
     }
 
     /**
@@ -593,9 +789,12 @@ public class VirtualSign extends VirtualSignStore {
     }
 
     /**
-     * Updates all nearby players with the live text information
+     * Updates all nearby players with the live text information.
+     * Is called by the store on ticks this sign was scheduled for an update.
      */
     public void update() {
+        this.publishLines();
+
         if (this.sign == null) {
             // Load sign for the first time
             if (this.loadSign()) {
@@ -610,70 +809,210 @@ public class VirtualSign extends VirtualSignStore {
             if (!this.verifySign()) {
                 return;
             }
-
-        } else {
-            // Refresh the Sign state now and then (just in case the tile got swapped or destroyed)
-            // Only do this for signs that have variables on them. Otherwise check less often.
-            // When disabled, don't do a refresh of the sign at all when no variables are displayed.
-            this.signcheckcounter++;
-            if (this.signcheckcounter == SIGN_CHECK_INTERVAL && this.hasVariables()) {
-                this.signcheckcounter = 0;
-                if (!this.verifySign()) {
-                    return;
-                }
-            } else if (this.signcheckcounter >= SIGN_CHECK_INTERVAL_NOVAR) {
-                this.signcheckcounter = 0;
-                if (SignLink.plugin.discoverSignChanges()) {
-                    if (!this.verifySign()) {
-                        return;
-                    }
-                }
-            }
         }
 
         // Send updated sign text to nearby players
         //FIX: Only do this for signs with variables on them!
         if (this.hasVariablesOnSign || this._isMidLinkSign) {
-            resendLines(VirtualLines::hasChanged);
+            resendLines(true);
         }
     }
 
-    private void resendLines(Predicate<VirtualLines> changedCheck) {
-        // Iterate all players in range of the sign, and mark them with a unique token
-        // Then remove all values from lastPlayersInRange that remain unset
-        final Object token = new Object();
+    private void resendLines(boolean onlyChanged) {
+        final PlayerHandleRegistry registry = PlayerHandleRegistry.INSTANCE;
+        this.throttledUpdateDelay = Integer.MAX_VALUE;
         forPlayersInRange(player -> {
-            VirtualLines lines = getLines(player);
-            if (lastPlayersInRange.put(lines, token) == null || changedCheck.test(lines)) {
-                this.sendLines(lines, player);
+            int playerHandle = registry.getHandle(player);
+            VirtualLines lines = getCurrentLines(playerHandle);
+            if (!onlyChanged) {
+                this.sendAndRecordLines(lines, player, playerHandle);
+                return;
+            }
+
+            // Players that came in range since the last time need the lines sent,
+            // unless the lines last sent to them are still the same
+            if (enteredViewers.contains(player)) {
+                if (isLastSent(lines, playerHandle)) {
+                    hiddenChangeViewers.remove(player);
+                    throttledViewers.remove(player);
+                } else {
+                    this.sendAndRecordLines(lines, player, playerHandle);
+                }
+                return;
+            }
+
+            // Changes to a side the player can't see are sent once the player can see it
+            SignSide hiddenSide = hiddenChangeViewers.get(player);
+            boolean throttled = throttledViewers.contains(player);
+            boolean frontChanged = throttled || lines.hasChanged(SignSide.FRONT) || hiddenSide == SignSide.FRONT;
+            boolean backChanged = throttled || lines.hasChanged(SignSide.BACK) || hiddenSide == SignSide.BACK;
+            if (!frontChanged && !backChanged) {
+                return;
+            }
+            if (!(frontChanged && canSeeSide(player, SignSide.FRONT)) && !(backChanged && canSeeSide(player, SignSide.BACK))) {
+                hiddenChangeViewers.put(player, frontChanged ? SignSide.FRONT : SignSide.BACK);
+                updateWhenViewerMoves(this, player);
+                return;
+            }
+
+            // Players further away are sent changes less often, sending the latest text when they are
+            int delay = getTicksUntilUpdateFrame(player);
+            if (delay != 0) {
+                throttledViewers.add(player);
+                if (delay > 0) {
+                    throttledUpdateDelay = Math.min(throttledUpdateDelay, delay);
+                } else {
+                    updateWhenViewerMoves(this, player);
+                }
+                return;
+            }
+
+            if (isLastSent(lines, playerHandle)) {
+                // Changed back to what the player already sees
+                hiddenChangeViewers.remove(player);
+                throttledViewers.remove(player);
+            } else {
+                this.sendAndRecordLines(lines, player, playerHandle);
             }
         });
-        lastPlayersInRange.values().removeIf(t -> t != token);
+        enteredViewers.clear();
 
         // All signs updated - they are no longer 'dirty'
         this.defaultlines.setChanged(false);
-        this.playerlinesValues.forEach(lines -> lines.setChanged(false));
+        this.playerlinesMap.values().forEach(lines -> lines.setChanged(false));
+
+        // Update again when the first throttled player can be sent the changes. Players
+        // that can't see the changed side are checked again when they move.
+        if (this.throttledUpdateDelay != Integer.MAX_VALUE) {
+            scheduleDelayedUpdate(this, this.throttledUpdateDelay);
+        }
+    }
+
+    // Gets the number of ticks until changes can be sent to a player, based on the distance
+    // to the sign and whether the player is idle. Is 0 when changes can be sent this tick,
+    // and -1 when changes are not sent until the player moves.
+    private int getTicksUntilUpdateFrame(Player player) {
+        Location loc = player.getLocation();
+        int distance = Math.max(Math.abs(loc.getBlockX() - this.getX()), Math.abs(loc.getBlockZ() - this.getZ()));
+        int interval = SignLink.plugin.getUpdateInterval(distance);
+        if (interval != 0 && IdlePlayerTracker.INSTANCE.isIdle(player)) {
+            int idleInterval = SignLink.plugin.getIdleUpdateInterval();
+            interval = (idleInterval == 0) ? 0 : Math.max(interval, idleInterval);
+        }
+        if (interval <= 1) {
+            return (interval == 1) ? 0 : -1;
+        }
+
+        // Offset by sign so that not all signs at this distance are sent the same tick
+        int phase = Math.floorMod(getUpdateTickCounter() + System.identityHashCode(this), interval);
+        return (phase == 0) ? 0 : (interval - phase);
+    }
+
+    /**
+     * Forgets the lines last sent to a player. The next change, or the player coming
+     * in range again, sends the lines again, even when they are the same as before.
+     *
+     * @param playerHandle Handle of the player
+     */
+    void forgetSentLines(int playerHandle) {
+        this.sentFingerprints.remove(playerHandle);
+        synchronized (this.sentWithChunk) {
+            this.sentWithChunk.clear(playerHandle);
+        }
+    }
+
+    /**
+     * Marks that a player was sent the lines of this sign another way, like with a chunk.
+     * Can be called from any thread. The lines last sent to the player are forgotten when
+     * {@link #forgetLinesSentWithChunk()} is called.
+     *
+     * @param playerHandle Handle of the player
+     */
+    void markSentWithChunk(int playerHandle) {
+        synchronized (this.sentWithChunk) {
+            this.sentWithChunk.set(playerHandle);
+        }
+    }
+
+    /**
+     * Forgets the lines last sent to the players marked using {@link #markSentWithChunk(int)}.
+     * The next change, or the player coming in range again, sends the lines again, even when
+     * they are the same as before.
+     */
+    void forgetLinesSentWithChunk() {
+        synchronized (this.sentWithChunk) {
+            for (int h = this.sentWithChunk.nextSetBit(0); h >= 0; h = this.sentWithChunk.nextSetBit(h + 1)) {
+                this.sentFingerprints.remove(h);
+            }
+            this.sentWithChunk.clear();
+        }
+    }
+
+    private boolean isLastSent(VirtualLines lines, int playerHandle) {
+        Long sent = sentFingerprints.get(playerHandle);
+        return sent != null && sent.longValue() == lines.getFingerprint();
+    }
+
+    private void sendAndRecordLines(VirtualLines lines, Player player, int playerHandle) {
+        this.sendLines(lines, player);
+        this.sentFingerprints.put(playerHandle, lines.getFingerprint());
+        this.hiddenChangeViewers.remove(player);
+        this.throttledViewers.remove(player);
     }
 
     public void sendCurrentLines(Player player) {
-        sendLines(getLines(player), player);
+        int playerHandle = PlayerHandleRegistry.INSTANCE.getHandle(player);
+        sendAndRecordLines(getCurrentLines(playerHandle), player, playerHandle);
     }
 
+    // Gets the lines displayed to a player, without creating lines for the player if it has none
+    private synchronized VirtualLines getCurrentLines(int playerHandle) {
+        return playerlinesMap.getOrDefault(playerHandle, defaultlines);
+    }
+
+    /**
+     * Sends lines of text of this sign to a player. The lines are sent at the end
+     * of the tick, together with the other signs sent to the player. Sending lines
+     * of this sign again before then replaces the lines that are sent.
+     *
+     * @param lines Lines to send
+     * @param player Player to send the lines to
+     */
     public void sendLines(VirtualLines lines, Player player) {
-        if (SignLink.updateSigns && player != null && sign != null) {
-            CommonPacket updatePacket = BlockUtil.getUpdatePacket(sign.getSign());
-            if (updatePacket != null) {
-                SLBlockStateChangeListener.applyDirect(this, player, updatePacket);
-                PacketUtil.sendPacket(player, updatePacket, false); // Send and skip listeners
-            }
+        if (player != null) {
+            queueSend(this, player, lines);
         }
     }
 
+    /**
+     * Creates the update packet of the sign as it is in the world. Lines can be applied to
+     * it afterwards, which can be done on another thread. Must be called on the main thread.
+     *
+     * @return update packet, or null if this sign is not loaded
+     */
+    CommonPacket createUpdatePacket() {
+        return (sign == null) ? null : BlockUtil.getUpdatePacket(sign.getSign());
+    }
+
+    /**
+     * Creates a copy of lines of this sign, that is not changed when the lines change
+     *
+     * @param lines Lines of this sign
+     * @return copy of the lines
+     */
+    synchronized VirtualLines snapshotLines(VirtualLines lines) {
+        return lines.frozenCopy();
+    }
+
     public void sendRealLines(Player player) {
         if (player != null && sign != null) {
+            // Sent right away, so lines sent later this tick must not replace them
+            cancelSend(this, player);
+            sentFingerprints.remove(PlayerHandleRegistry.INSTANCE.getHandle(player));
+
             CommonPacket updatePacket = BlockUtil.getUpdatePacket(sign.getSign());
             if (updatePacket != null) {
-                PacketUtil.sendPacket(player, updatePacket, false); // Send and skip listeners
+                sendUnchangedPacket(this, updatePacket, player);
             }
         }
     }
@@ -1,13 +1,23 @@
 package com.bergerkiller.bukkit.sl;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
 
 import com.bergerkiller.bukkit.common.block.SignChangeTracker;
 import com.bergerkiller.bukkit.common.block.SignSide;
 import com.bergerkiller.bukkit.common.utils.WorldUtil;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -19,11 +29,16 @@ import com.bergerkiller.bukkit.common.Task;
 import com.bergerkiller.bukkit.common.bases.IntVector3;
 import com.bergerkiller.bukkit.common.offline.OfflineBlock;
 import com.bergerkiller.bukkit.common.offline.OfflineWorld;
+import com.bergerkiller.bukkit.common.protocol.CommonPacket;
 import com.bergerkiller.bukkit.common.utils.BlockUtil;
 import com.bergerkiller.bukkit.common.utils.MaterialUtil;
-import com.bergerkiller.bukkit.sl.API.Variable;
+import com.bergerkiller.bukkit.sl.impl.VariableMap;
 import com.bergerkiller.bukkit.sl.API.Variables;
+import com.bergerkiller.bukkit.sl.util.ChunkIndex;
 import com.bergerkiller.bukkit.sl.util.ConcurrentMapList;
+import com.bergerkiller.bukkit.sl.util.IntObjectHashMap;
+import com.bergerkiller.bukkit.sl.util.LongObjectHashMap;
+import com.bergerkiller.bukkit.sl.util.TimingWheel;
 
 /**
  * Maps all Virtual Signs against the block location of the respective sign.
@@ -31,15 +46,77 @@ import com.bergerkiller.bukkit.sl.util.ConcurrentMapList;
  */
 public class VirtualSignStore {
     private static ConcurrentMapList<OfflineBlock, VirtualSign> virtualSigns;
+    private static ChunkIndex<OfflineWorld, VirtualSign> virtualSignsByChunk;
     private static final HashSet<OfflineBlock> changedSignBlocks = new HashSet<OfflineBlock>();
+    // Signs by packed block coordinates for every world, and the worlds changed since last publishing
+    private static final Map<OfflineWorld, LongObjectHashMap<VirtualSign>> signsByPosition = new HashMap<>();
+    private static final Set<OfflineWorld> changedPositionWorlds = new HashSet<>();
+    // Read-only copy of signsByPosition, read without locking by the network threads
+    private static volatile Map<OfflineWorld, LongObjectHashMap<VirtualSign>> publishedSignsByPosition = Collections.emptyMap();
+    // Signs that the network threads want verified, handled the next tick
+    // A sign is only added once until it is handled, see VirtualSign.verifyQueued
+    private static final ConcurrentLinkedQueue<VirtualSign> pendingVerifies = new ConcurrentLinkedQueue<>();
+    // Tracks the virtual signs that store lines for a player, by player handle
+    // Uses its own lock, as it is updated while the VirtualSign itself is locked
+    private static final IntObjectHashMap<Set<VirtualSign>> signsWithPlayerLines = new IntObjectHashMap<>();
+    // Signs that must be updated the next tick. Uses its own lock, as signs are
+    // scheduled from other threads, or while the VirtualSign itself is locked
+    private static final Object pendingUpdatesLock = new Object();
+    private static Set<VirtualSign> pendingUpdates = new LinkedHashSet<>();
+    // Lines of signs to send to every player at the end of the tick, deduplicated by sign
+    // Uses its own lock, as lines are sent while the VirtualSign itself is locked
+    private static final Object pendingSendsLock = new Object();
+    private static Map<Player, Map<VirtualSign, VirtualLines>> pendingSends = new IdentityHashMap<>();
+    // Number of sign sends that did not fit in the per-player budget the last tick
+    private static int deferredSendCount = 0;
+    // Rewrites and sends the sign update packets off the main thread
+    private static SignPacketWorkers packetWorkers = null;
+    // Schedules the routine verification of signs
+    private static final int SIGN_CHECK_INTERVAL = 100;
+    private static final int SIGN_CHECK_INTERVAL_NOVAR = 400;
+    private static final TimingWheel<VirtualSign> verifyWheel = new TimingWheel<>(512);
+    // Schedules updates of signs some ticks from now
+    private static final TimingWheel<VirtualSign> delayedUpdateWheel = new TimingWheel<>(64);
+    // Number of times the signs were updated, used to spread out sending sign changes
+    private static int updateTickCounter = 0;
+    // Last known block position of every online player, to detect when signs go in or out of range
+    private static final Map<Player, ViewerPosition> viewerPositions = new IdentityHashMap<>();
+    // Online players by the chunk they were last in, to find the players near a newly stored sign
+    private static final ChunkIndex<World, Player> viewersByChunk = new ChunkIndex<>();
+    // Signs to update when a player moves, because the player could not see changes made to them
+    private static final Map<Player, Set<VirtualSign>> signsUpdatedOnMove = new IdentityHashMap<>();
 
     public static void deinit() {
         virtualSigns.clear();
         virtualSigns = null;
+        virtualSignsByChunk.clear();
+        virtualSignsByChunk = null;
+        signsByPosition.clear();
+        changedPositionWorlds.clear();
+        publishedSignsByPosition = Collections.emptyMap();
+        pendingVerifies.clear();
+        synchronized (signsWithPlayerLines) {
+            signsWithPlayerLines.clear();
+        }
+        synchronized (pendingUpdatesLock) {
+            pendingUpdates.clear();
+        }
+        synchronized (pendingSendsLock) {
+            pendingSends.clear();
+        }
+        verifyWheel.clear();
+        delayedUpdateWheel.clear();
+        viewerPositions.clear();
+        viewersByChunk.clear();
+        signsUpdatedOnMove.clear();
+        packetWorkers.shutdown();
+        packetWorkers = null;
     }
 
     public static void init() {
         virtualSigns = new ConcurrentMapList<>();
+        virtualSignsByChunk = new ChunkIndex<>();
+        packetWorkers = new SignPacketWorkers(SignLink.plugin.getPacketWorkerThreads());
     }
 
     public static synchronized VirtualSign add(Block block, VirtualLines.SignSideLines frontLines, VirtualLines.SignSideLines backLines) {
@@ -47,7 +124,7 @@ public class VirtualSignStore {
             return null;
         }
         VirtualSign vsign = new VirtualSign(block, frontLines, backLines);
-        virtualSigns.put(OfflineBlock.of(vsign.getBlock()), vsign);
+        store(vsign);
         return vsign;
     }
 
@@ -56,10 +133,524 @@ public class VirtualSignStore {
             return null;
         }
         VirtualSign vsign = new VirtualSign(sign);
-        virtualSigns.put(OfflineBlock.of(vsign.getBlock()), vsign);
+        store(vsign);
         return vsign;
     }
 
+    private static void store(VirtualSign vsign) {
+        OfflineBlock block = vsign.getOfflineBlock();
+        VirtualSign prev = virtualSigns.put(block, vsign);
+        if (prev != null) {
+            virtualSignsByChunk.remove(block.getWorld(), prev.getChunkX(), prev.getChunkZ(), prev);
+            unscheduleVerify(prev);
+        }
+        virtualSignsByChunk.add(block.getWorld(), vsign.getChunkX(), vsign.getChunkZ(), vsign);
+        signsByPosition.computeIfAbsent(block.getWorld(), w -> new LongObjectHashMap<>())
+                .put(packPosition(vsign.getX(), vsign.getY(), vsign.getZ()), vsign);
+        changedPositionWorlds.add(block.getWorld());
+        vsign.isStored = true;
+        updateVerifySchedule(vsign);
+
+        // Players already near the sign are its initial viewers
+        World world = vsign.getWorld();
+        if (world != null) {
+            final int range = VirtualSign.VIEW_RANGE;
+            viewersByChunk.forEachInChunkRange(world,
+                    (vsign.getX() - range) >> 4, (vsign.getZ() - range) >> 4,
+                    (vsign.getX() + range) >> 4, (vsign.getZ() + range) >> 4,
+                    player -> updateViewerOfSign(vsign, player, viewerPositions.get(player)));
+        }
+    }
+
+    private static VirtualSign unstore(OfflineBlock block) {
+        VirtualSign removed = virtualSigns.remove(block);
+        if (removed != null) {
+            virtualSignsByChunk.remove(block.getWorld(), removed.getChunkX(), removed.getChunkZ(), removed);
+            unstorePosition(removed);
+            unscheduleVerify(removed);
+        }
+        return removed;
+    }
+
+    // Unstores a sign already removed from the chunk index
+    private static void unstoreRemovedFromChunk(VirtualSign vsign) {
+        virtualSigns.remove(vsign.getOfflineBlock());
+        unstorePosition(vsign);
+        unscheduleVerify(vsign);
+    }
+
+    private static void unstorePosition(VirtualSign vsign) {
+        OfflineWorld world = vsign.getOfflineBlock().getWorld();
+        LongObjectHashMap<VirtualSign> signs = signsByPosition.get(world);
+        if (signs != null) {
+            signs.remove(packPosition(vsign.getX(), vsign.getY(), vsign.getZ()));
+            if (signs.isEmpty()) {
+                signsByPosition.remove(world);
+            }
+            changedPositionWorlds.add(world);
+        }
+    }
+
+    private static long packPosition(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (long) (y & 0xFFF);
+    }
+
+    /**
+     * Makes the signs stored or removed since the last time visible to
+     * {@link #getPublished(World, IntVector3)}. Is called every tick, and
+     * should be called after loading a lot of signs at once.
+     */
+    public static synchronized void publishSigns() {
+        if (changedPositionWorlds.isEmpty()) {
+            return;
+        }
+        Map<OfflineWorld, LongObjectHashMap<VirtualSign>> published = new HashMap<>(publishedSignsByPosition);
+        for (OfflineWorld world : changedPositionWorlds) {
+            LongObjectHashMap<VirtualSign> signs = signsByPosition.get(world);
+            if (signs == null) {
+                published.remove(world);
+            } else {
+                published.put(world, new LongObjectHashMap<>(signs));
+            }
+        }
+        changedPositionWorlds.clear();
+        publishedSignsByPosition = published;
+    }
+
+    /**
+     * Gets a Virtual Sign as it was last published using {@link #publishSigns()}.
+     * Does not lock or allocate, and is safe to call from any thread. Might return
+     * a sign that was removed since, or not return a sign that was stored since.
+     *
+     * @param world World of the sign
+     * @param position Block position of the sign
+     * @return Virtual Sign at this position, or null if none was published
+     */
+    public static VirtualSign getPublished(World world, IntVector3 position) {
+        LongObjectHashMap<VirtualSign> signs = publishedSignsByPosition.get(OfflineWorld.of(world));
+        return (signs == null) ? null : signs.get(packPosition(position.x, position.y, position.z));
+    }
+
+    /**
+     * Schedules a sign to be verified the next tick. Can be called from any thread
+     * without locking the store or the sign. Does nothing if the sign is already
+     * queued.
+     *
+     * @param vsign Virtual Sign to verify
+     */
+    static void queueVerify(VirtualSign vsign) {
+        if (vsign.verifyQueued.compareAndSet(false, true)) {
+            pendingVerifies.add(vsign);
+        }
+    }
+
+    /**
+     * Tells the store that a player was sent the lines of a sign other than through the
+     * store, like with a chunk. The lines last sent to the player are forgotten the next
+     * tick, so that changes are sent again. Can be called from any thread without
+     * locking the store. The player is marked in the sign, and the sign is queued to be
+     * verified, when the marked players are forgotten too.
+     *
+     * @param vsign Virtual Sign that was sent
+     * @param playerHandle Handle of the player it was sent to
+     */
+    static void queueForgetSentLines(VirtualSign vsign, int playerHandle) {
+        vsign.markSentWithChunk(playerHandle);
+        queueVerify(vsign);
+    }
+
+    private static void unscheduleVerify(VirtualSign vsign) {
+        vsign.isStored = false;
+        verifyWheel.cancel(vsign.verifyEntry);
+        delayedUpdateWheel.cancel(vsign.delayedUpdateEntry);
+    }
+
+    /**
+     * Schedules the next routine verification of a sign. Signs displaying
+     * variables are verified more often than signs that don't. When discovering
+     * sign changes is disabled, signs without variables are not verified at all.
+     * Should be called when the sign starts or stops displaying variables.
+     *
+     * @param vsign Virtual Sign
+     */
+    static synchronized void updateVerifySchedule(VirtualSign vsign) {
+        if (!vsign.isStored) {
+            return;
+        }
+        if (vsign.hasVariables()) {
+            verifyWheel.schedule(vsign.verifyEntry, SIGN_CHECK_INTERVAL);
+        } else if (SignLink.plugin.discoverSignChanges()) {
+            verifyWheel.schedule(vsign.verifyEntry, SIGN_CHECK_INTERVAL_NOVAR);
+        } else {
+            verifyWheel.cancel(vsign.verifyEntry);
+        }
+    }
+
+    /**
+     * Gets the number of signs that are due for routine verification, but were
+     * not verified yet because of the verify limit per tick
+     *
+     * @return number of signs waiting to be verified
+     */
+    public static synchronized int getPendingVerifyCount() {
+        return verifyWheel.getExpiredCount();
+    }
+
+    /**
+     * Gets the number of times {@link #updateSigns()} was called
+     *
+     * @return update tick counter
+     */
+    static int getUpdateTickCounter() {
+        return updateTickCounter;
+    }
+
+    /**
+     * Schedules a sign to be updated the next tick. Can be called from any thread.
+     *
+     * @param vsign Virtual Sign to update
+     */
+    static void queueUpdate(VirtualSign vsign) {
+        synchronized (pendingUpdatesLock) {
+            pendingUpdates.add(vsign);
+        }
+    }
+
+    /**
+     * Schedules a sign to be updated a number of ticks from now. If an update was
+     * already scheduled this way, it is replaced.
+     *
+     * @param vsign Virtual Sign to update
+     * @param delay Number of ticks from now to update the sign, at least 1
+     */
+    static synchronized void scheduleDelayedUpdate(VirtualSign vsign, int delay) {
+        if (vsign.isStored) {
+            delayedUpdateWheel.schedule(vsign.delayedUpdateEntry, delay);
+        }
+    }
+
+    /**
+     * Schedules a sign to be updated the next time a player moves to another block.
+     * Is used when the player can't see the changes made to the sign where it is
+     * right now. Must be called on the main thread.
+     *
+     * @param vsign Virtual Sign to update
+     * @param player Player that is waited on
+     */
+    static void updateWhenViewerMoves(VirtualSign vsign, Player player) {
+        signsUpdatedOnMove.computeIfAbsent(player, p -> new HashSet<>()).add(vsign);
+    }
+
+    /**
+     * Schedules the signs waiting for a player to move to be updated the next tick.
+     * Is called when the player moves to another block, or is no longer idle.
+     * Must be called on the main thread.
+     *
+     * @param player Player
+     */
+    static void updateSignsWaitingForViewer(Player player) {
+        Set<VirtualSign> signs = signsUpdatedOnMove.remove(player);
+        if (signs != null) {
+            signs.forEach(VirtualSignStore::queueUpdate);
+        }
+    }
+
+    /**
+     * Schedules the lines of a sign to be sent to a player at the end of the tick.
+     * If lines of the same sign were already scheduled for the player, they are
+     * replaced. Can be called from any thread.
+     *
+     * @param vsign Virtual Sign to send
+     * @param player Player to send the lines to
+     * @param lines Lines to send
+     */
+    static void queueSend(VirtualSign vsign, Player player, VirtualLines lines) {
+        synchronized (pendingSendsLock) {
+            pendingSends.computeIfAbsent(player, p -> new LinkedHashMap<>()).put(vsign, lines);
+        }
+    }
+
+    /**
+     * Cancels sending lines of a sign to a player that were scheduled using
+     * {@link #queueSend(VirtualSign, Player, VirtualLines)}
+     *
+     * @param vsign Virtual Sign
+     * @param player Player
+     */
+    static void cancelSend(VirtualSign vsign, Player player) {
+        synchronized (pendingSendsLock) {
+            Map<VirtualSign, VirtualLines> sends = pendingSends.get(player);
+            if (sends != null) {
+                sends.remove(vsign);
+            }
+        }
+    }
+
+    /**
+     * Sends the update packet of a sign to a player right away, without applying
+     * any lines to it. Lines of the sign still queued to be sent to the player are
+     * no longer sent, so they can't replace the text of this packet.
+     *
+     * @param vsign Virtual Sign the packet is for
+     * @param packet Update packet of the sign
+     * @param player Player to send the packet to
+     */
+    static void sendUnchangedPacket(VirtualSign vsign, CommonPacket packet, Player player) {
+        packetWorkers.sendUnchanged(vsign.queuedPackets, packet, player);
+    }
+
+    /**
+     * Gets the number of sign updates that were not sent to players the last tick,
+     * because the maximum number of sign packets per player per tick was reached.
+     * These are sent in the ticks after.
+     *
+     * @return number of deferred sign updates
+     */
+    public static synchronized int getDeferredSendCount() {
+        return deferredSendCount;
+    }
+
+    // Sends all the lines scheduled this tick. The update packets are created here, and
+    // rewritten and sent by the packet workers. The packet of the default lines of a sign
+    // is created once and sent to all players that see them.
+    private static void flushSends() {
+        Map<Player, Map<VirtualSign, VirtualLines>> sends;
+        synchronized (pendingSendsLock) {
+            deferredSendCount = 0;
+            if (pendingSends.isEmpty()) {
+                return;
+            }
+            sends = pendingSends;
+            pendingSends = new IdentityHashMap<>();
+        }
+        if (!SignLink.updateSigns) {
+            return;
+        }
+        int budget = SignLink.plugin.getMaxSignPacketsPerPlayerTick();
+        Map<VirtualLines, SendJob> jobs = new IdentityHashMap<>();
+        for (Map.Entry<Player, Map<VirtualSign, VirtualLines>> playerSends : sends.entrySet()) {
+            Player player = playerSends.getKey();
+            if (!player.isOnline()) {
+                continue;
+            }
+            Map<VirtualSign, VirtualLines> signs = playerSends.getValue();
+            if (budget <= 0 || signs.size() <= budget) {
+                for (Map.Entry<VirtualSign, VirtualLines> send : signs.entrySet()) {
+                    addSendJob(jobs, player, send.getKey(), send.getValue());
+                }
+                continue;
+            }
+
+            // Over budget: send the closest signs first, and the rest in the ticks after
+            List<Map.Entry<VirtualSign, VirtualLines>> sorted = new ArrayList<>(signs.entrySet());
+            Location loc = player.getLocation();
+            sorted.sort(Comparator.comparingLong(send -> distanceSquared(send.getKey(), loc)));
+            for (int i = 0; i < budget; i++) {
+                Map.Entry<VirtualSign, VirtualLines> send = sorted.get(i);
+                addSendJob(jobs, player, send.getKey(), send.getValue());
+            }
+            synchronized (pendingSendsLock) {
+                Map<VirtualSign, VirtualLines> deferred = pendingSends.computeIfAbsent(player, p -> new LinkedHashMap<>());
+                for (int i = budget; i < sorted.size(); i++) {
+                    // Lines queued since are newer, keep those
+                    Map.Entry<VirtualSign, VirtualLines> send = sorted.get(i);
+                    deferred.putIfAbsent(send.getKey(), send.getValue());
+                }
+                deferredSendCount += sorted.size() - budget;
+            }
+        }
+
+        for (SendJob job : jobs.values()) {
+            if (job.packet != null) {
+                packetWorkers.send(job.sign.queuedPackets, job.lines, job.packet, job.recipients);
+            }
+        }
+    }
+
+    private static void addSendJob(Map<VirtualLines, SendJob> jobs, Player player, VirtualSign sign, VirtualLines lines) {
+        SendJob job = jobs.get(lines);
+        if (job == null) {
+            job = new SendJob(sign, sign.snapshotLines(lines), sign.createUpdatePacket());
+            jobs.put(lines, job);
+        }
+        job.recipients.add(player);
+    }
+
+    private static long distanceSquared(VirtualSign sign, Location loc) {
+        if (sign.getWorld() != loc.getWorld()) {
+            return Long.MAX_VALUE;
+        }
+        long dx = sign.getX() - loc.getBlockX();
+        long dy = sign.getY() - loc.getBlockY();
+        long dz = sign.getZ() - loc.getBlockZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Updates all the signs that require an update this tick. These are the signs
+     * whose lines changed, that must be verified, or that players moved in or out of range of.
+     * Should be called every tick.
+     */
+    public static synchronized void updateSigns() {
+        if (virtualSigns == null) {
+            return;
+        }
+        updateTickCounter++;
+
+        // Verify the signs the network threads asked for
+        // Players were sent some of these signs with a chunk, so what they saw last is unknown
+        VirtualSign verified;
+        while ((verified = pendingVerifies.poll()) != null) {
+            verified.verifyQueued.set(false);
+            verified.forgetLinesSentWithChunk();
+            verified.scheduleVerify();
+        }
+
+        // Refresh the Sign state now and then (just in case the tile got swapped or destroyed)
+        // Only do this for signs that have variables on them. Otherwise check less often.
+        // When disabled, don't do a refresh of the sign at all when no variables are displayed.
+        // Signs over the verify limit are left in the wheel and verified in the ticks after
+        verifyWheel.advance();
+        int verifyLimit = SignLink.plugin.getMaxSignVerifiesPerTick();
+        for (int n = 0; verifyLimit <= 0 || n < verifyLimit; n++) {
+            VirtualSign due = verifyWheel.poll();
+            if (due == null) {
+                break;
+            }
+            due.scheduleVerify();
+            updateVerifySchedule(due);
+        }
+
+        // Signs that wanted to be updated this tick
+        delayedUpdateWheel.advance();
+        VirtualSign delayed;
+        while ((delayed = delayedUpdateWheel.poll()) != null) {
+            delayed.scheduleUpdate();
+        }
+
+        // Players that moved need the signs that went in or out of range updated
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            updateViewer(player);
+        }
+
+        // Swap out the pending set, as updating signs can schedule them again for the next tick
+        Set<VirtualSign> signs;
+        synchronized (pendingUpdatesLock) {
+            signs = pendingUpdates;
+            pendingUpdates = new LinkedHashSet<>();
+        }
+        for (VirtualSign sign : signs) {
+            if (sign.isStored) {
+                sign.update();
+            }
+        }
+
+        // Signs stored or removed this tick can now be found by the network threads
+        publishSigns();
+
+        // Send all lines that changed this tick
+        flushSends();
+    }
+
+    private static void updateViewer(Player player) {
+        Location loc = player.getLocation();
+        World world = loc.getWorld();
+        int x = loc.getBlockX();
+        int z = loc.getBlockZ();
+        final int range = VirtualSign.VIEW_RANGE;
+
+        ViewerPosition pos = viewerPositions.get(player);
+        if (pos != null && (pos.world != world || pos.x != x || pos.z != z)) {
+            // Moved, signs with changes the player could not see before are checked again
+            updateSignsWaitingForViewer(player);
+        }
+        if (pos == null) {
+            // Joined, all signs in range are new
+            pos = new ViewerPosition(world, x, z);
+            viewerPositions.put(player, pos);
+            viewersByChunk.add(world, x >> 4, z >> 4, player);
+            updateViewerInArea(player, pos, world, x - range, z - range, x + range, z + range);
+        } else if (pos.world != world || Math.abs(pos.x - x) > (2 * range) || Math.abs(pos.z - z) > (2 * range)) {
+            // Changed world or teleported far away, the old and new areas don't overlap
+            World oldWorld = pos.world;
+            int oldX = pos.x;
+            int oldZ = pos.z;
+            moveViewer(player, pos, world, x, z);
+            updateViewerInArea(player, pos, oldWorld, oldX - range, oldZ - range, oldX + range, oldZ + range);
+            updateViewerInArea(player, pos, world, x - range, z - range, x + range, z + range);
+        } else if (pos.x != x || pos.z != z) {
+            // Moved a little. Only the signs at the edges of the old and new area
+            // can go in or out of range, so only visit the chunks at those edges.
+            int minX = Math.min(pos.x, x), maxX = Math.max(pos.x, x);
+            int minZ = Math.min(pos.z, z), maxZ = Math.max(pos.z, z);
+            moveViewer(player, pos, world, x, z);
+            if (minX != maxX) {
+                updateViewerInArea(player, pos, world, minX - range, minZ - range, maxX - range - 1, maxZ + range);
+                updateViewerInArea(player, pos, world, minX + range + 1, minZ - range, maxX + range, maxZ + range);
+            }
+            if (minZ != maxZ) {
+                updateViewerInArea(player, pos, world, minX - range, minZ - range, maxX + range, maxZ - range - 1);
+                updateViewerInArea(player, pos, world, minX - range, minZ + range + 1, maxX + range, maxZ + range);
+            }
+        }
+    }
+
+    // Updates the position of a viewer, and the chunk it is indexed by when that changed
+    private static void moveViewer(Player player, ViewerPosition pos, World world, int x, int z) {
+        if (pos.world != world || (pos.x >> 4) != (x >> 4) || (pos.z >> 4) != (z >> 4)) {
+            viewersByChunk.remove(pos.world, pos.x >> 4, pos.z >> 4, player);
+            viewersByChunk.add(world, x >> 4, z >> 4, player);
+        }
+        pos.world = world;
+        pos.x = x;
+        pos.z = z;
+    }
+
+    /**
+     * Adds or removes a player as viewer of all the signs in an area of blocks,
+     * depending on whether the signs are in range of the player position.
+     * Signs in the same chunks outside the area are visited too, which is harmless.
+     */
+    private static void updateViewerInArea(Player player, ViewerPosition pos, World world, int minX, int minZ, int maxX, int maxZ) {
+        if (world == null) {
+            return;
+        }
+        forEachSignInChunks(world, minX >> 4, minZ >> 4, maxX >> 4, maxZ >> 4, sign -> {
+            updateViewerOfSign(sign, player, pos);
+        });
+    }
+
+    private static void updateViewerOfSign(VirtualSign sign, Player player, ViewerPosition pos) {
+        if (pos != null && isNear(sign, pos.world, pos.x, pos.z, VirtualSign.VIEW_RANGE)) {
+            if (!sign.isViewer(player)) {
+                sign.onViewerEntered(player);
+            }
+        } else if (sign.isViewer(player)) {
+            sign.onViewerLeft(player);
+        }
+    }
+
+    private static boolean isNear(VirtualSign sign, World world, int x, int z, int range) {
+        return world == sign.getWorld() && Math.abs(sign.getX() - x) <= range && Math.abs(sign.getZ() - z) <= range;
+    }
+
+    /**
+     * Stops tracking a player that is no longer online
+     *
+     * @param player Player that quit
+     */
+    public static synchronized void removeViewer(Player player) {
+        signsUpdatedOnMove.remove(player);
+        ViewerPosition pos = viewerPositions.remove(player);
+        if (pos != null) {
+            viewersByChunk.remove(pos.world, pos.x >> 4, pos.z >> 4, player);
+        }
+        if (pos != null && virtualSigns != null) {
+            final int range = VirtualSign.VIEW_RANGE;
+            updateViewerInArea(player, null, pos.world, pos.x - range, pos.z - range, pos.x + range, pos.z + range);
+        }
+    }
+
     public static VirtualSign add(Block signBlock) {
         Sign sign = BlockUtil.getSign(signBlock);
         if (sign == null) {
@@ -103,7 +694,7 @@ public class VirtualSignStore {
             }
             return sign;
         } else {
-            virtualSigns.remove(OfflineBlock.of(b));
+            unstore(OfflineBlock.of(b));
             return null;
         }
     }
@@ -178,22 +769,92 @@ public class VirtualSignStore {
      * @return True if a Virtual Sign was removed, False if not
      */
     public static synchronized boolean remove(OfflineBlock signBlock) {
-        if (virtualSigns == null || virtualSigns.remove(signBlock) == null) {
+        if (virtualSigns == null || unstore(signBlock) == null) {
             return false;
         }
 
-        for (Variable var : Variables.getAll()) {
-            var.removeLocation(signBlock);
-        }
+        removeVariableLocations(signBlock);
         return true;
     }
 
+    private static void removeVariableLocations(OfflineBlock signBlock) {
+        VariableMap.INSTANCE.removeLocations(signBlock);
+    }
+
+    /**
+     * Removes all Virtual Signs stored for a world. Unlike {@link #removeChunk(World, int, int)}
+     * the variables displayed on these signs are kept.
+     *
+     * @param world World to remove the signs of
+     */
     public static synchronized void removeAll(World world) {
-        virtualSigns.forEachValue(vsign -> {
-            if (vsign.getWorld() == world) {
-                virtualSigns.remove(vsign.getOfflineBlock());
-            }
-        });
+        if (virtualSigns == null) {
+            return;
+        }
+        for (VirtualSign vsign : virtualSignsByChunk.removeWorld(OfflineWorld.of(world))) {
+            unstoreRemovedFromChunk(vsign);
+        }
+    }
+
+    /**
+     * Removes all Virtual Signs stored in a chunk, as well as the variables displayed on them.
+     * Should be called when the chunk unloads.
+     *
+     * @param world World of the chunk
+     * @param chunkX Chunk X-coordinate
+     * @param chunkZ Chunk Z-coordinate
+     */
+    public static synchronized void removeChunk(World world, int chunkX, int chunkZ) {
+        if (virtualSigns == null) {
+            return;
+        }
+        for (VirtualSign vsign : virtualSignsByChunk.removeChunk(OfflineWorld.of(world), chunkX, chunkZ)) {
+            unstoreRemovedFromChunk(vsign);
+            removeVariableLocations(vsign.getOfflineBlock());
+        }
+    }
+
+    /**
+     * Removes all Virtual Signs stored on a world, as well as the variables displayed on them.
+     * Should be called when the world unloads.
+     *
+     * @param world World to remove the signs of
+     */
+    public static synchronized void removeWorld(World world) {
+        if (virtualSigns == null) {
+            return;
+        }
+        for (VirtualSign vsign : virtualSignsByChunk.removeWorld(OfflineWorld.of(world))) {
+            unstoreRemovedFromChunk(vsign);
+            removeVariableLocations(vsign.getOfflineBlock());
+        }
+    }
+
+    /**
+     * Supplies a consumer with every virtual sign in an area of chunks on a world
+     *
+     * @param world World
+     * @param minChunkX Minimum chunk X-coordinate (inclusive)
+     * @param minChunkZ Minimum chunk Z-coordinate (inclusive)
+     * @param maxChunkX Maximum chunk X-coordinate (inclusive)
+     * @param maxChunkZ Maximum chunk Z-coordinate (inclusive)
+     * @param method Consumer
+     */
+    public static synchronized void forEachSignInChunks(World world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, Consumer<VirtualSign> method) {
+        if (virtualSigns != null) {
+            virtualSignsByChunk.forEachInChunkRange(OfflineWorld.of(world), minChunkX, minChunkZ, maxChunkX, maxChunkZ, method);
+        }
+    }
+
+    private static void forEachSignNear(Block block, int radius, Consumer<VirtualSign> method) {
+        forEachSignNear(block.getWorld(), block.getX(), block.getZ(), radius, method);
+    }
+
+    private static void forEachSignNear(World world, int x, int z, int radius, Consumer<VirtualSign> method) {
+        virtualSignsByChunk.forEachInChunkRange(OfflineWorld.of(world),
+                (x - radius) >> 4, (z - radius) >> 4,
+                (x + radius) >> 4, (z + radius) >> 4,
+                method);
     }
 
     public static void globalUpdateSignOrders() {
@@ -232,14 +893,12 @@ public class VirtualSignStore {
         }
         final int SIGN_RADIUS = 25;
         final Block playerBlock = forplayer.getLocation().getBlock();
-        virtualSigns.forEachValue(sign -> {
-            if (sign.getWorld() == playerBlock.getWorld()) {
-                int dx = playerBlock.getX() - sign.getX();
-                int dy = playerBlock.getY() - sign.getY();
-                int dz = playerBlock.getZ() - sign.getZ();
-                if (((dx * dx) + (dy * dy) + (dz * dz)) < (SIGN_RADIUS * SIGN_RADIUS)) {
-                    sign.sendCurrentLines(forplayer);
-                }
+        forEachSignNear(playerBlock, SIGN_RADIUS, sign -> {
+            int dx = playerBlock.getX() - sign.getX();
+            int dy = playerBlock.getY() - sign.getY();
+            int dz = playerBlock.getZ() - sign.getZ();
+            if (((dx * dx) + (dy * dy) + (dz * dz)) < (SIGN_RADIUS * SIGN_RADIUS)) {
+                sign.sendCurrentLines(forplayer);
             }
         });
     }
@@ -249,18 +908,74 @@ public class VirtualSignStore {
      *
      * @param playerName Name of the player, must be all-lowercase
      */
-    public static synchronized void clearPlayer(final String playerName) {
-        virtualSigns.forEachValue(sign -> sign.resetLines(playerName));
+    public static void clearPlayer(final String playerName) {
+        int playerHandle = PlayerHandleRegistry.INSTANCE.findHandle(playerName);
+        if (playerHandle == PlayerHandleRegistry.NO_HANDLE) {
+            return;
+        }
+
+        // Take a copy first, as resetLines() updates the same set
+        List<VirtualSign> signs;
+        synchronized (signsWithPlayerLines) {
+            Set<VirtualSign> set = signsWithPlayerLines.get(playerHandle);
+            if (set == null) {
+                return;
+            }
+            signs = new ArrayList<>(set);
+        }
+        for (VirtualSign sign : signs) {
+            sign.resetLines(playerHandle);
+        }
+    }
+
+    /**
+     * Forgets the lines last sent to a player by all signs. Is called when the handle
+     * of a player that quit is recycled, so that another player given the same handle
+     * is sent all lines.
+     *
+     * @param playerHandle Handle of the player
+     */
+    public static synchronized void forgetPlayerHandle(int playerHandle) {
+        if (virtualSigns != null) {
+            virtualSigns.forEachValue(vs -> vs.forgetSentLines(playerHandle));
+        }
     }
 
     public static synchronized void invalidateAll(final Player player) {
-        virtualSigns.forEachValue(vs -> {
+        if (player.getWorld() == null) {
+            return;
+        }
+        forEachSignNear(player.getLocation().getBlock(), VirtualSign.VIEW_RANGE, vs -> {
             if (vs.isInRange(player)) {
                 vs.invalidate(player);
             }
         });
     }
 
+    /**
+     * Called by a virtual sign when it starts or stops storing lines for a player
+     *
+     * @param sign Virtual Sign
+     * @param playerHandle Handle of the player
+     * @param hasLines Whether the sign now stores lines for this player
+     */
+    static void trackPlayerLines(VirtualSign sign, int playerHandle, boolean hasLines) {
+        synchronized (signsWithPlayerLines) {
+            Set<VirtualSign> signs = signsWithPlayerLines.get(playerHandle);
+            if (hasLines) {
+                if (signs == null) {
+                    signs = new HashSet<>();
+                    signsWithPlayerLines.put(playerHandle, signs);
+                    PlayerHandleRegistry.INSTANCE.retain(playerHandle);
+                }
+                signs.add(sign);
+            } else if (signs != null && signs.remove(sign) && signs.isEmpty()) {
+                signsWithPlayerLines.remove(playerHandle);
+                PlayerHandleRegistry.INSTANCE.release(playerHandle);
+            }
+        }
+    }
+
     /**
      * Schedules a refresh of the sign order and variable display for a sign block
      * 
@@ -298,4 +1013,30 @@ public class VirtualSignStore {
         }
         return vsign;
     }
+
+    // Update packet of a sign with the lines to apply, and the players to send it to
+    private static final class SendJob {
+        public final VirtualSign sign;
+        public final VirtualLines lines;
+        public final CommonPacket packet;
+        public final List<Player> recipients = new ArrayList<>(1);
+
+        public SendJob(VirtualSign sign, VirtualLines lines, CommonPacket packet) {
+            this.sign = sign;
+            this.lines = lines;
+            this.packet = packet;
+        }
+    }
+
+    private static final class ViewerPosition {
+        public World world;
+        public int x;
+        public int z;
+
+        public ViewerPosition(World world, int x, int z) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+        }
+    }
 }
@@ -109,9 +109,9 @@ public abstract class TickerBaseImpl extends Ticker {
         // Update text based on ticker configuration
         switch (this.mode) {
         case LEFT:
-            text.left(); break;
+            text.shiftLeft(); break;
         case RIGHT:
-            text.right(); break;
+            text.shiftRight(); break;
         case BLINK:
             text.blink(); break;
         default:
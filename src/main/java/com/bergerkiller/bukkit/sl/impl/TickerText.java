@@ -12,9 +12,14 @@ import java.util.NoSuchElementException;
  * in a format that allows the text to scroll and wrap around
  */
 public class TickerText implements Cloneable {
+    // Text value, null when it must be computed from the styled value elements first
     private String value = "";
-    private final StyledString styledValue;
+    private StyledString styledValue;
     private StyledElementSequence styledValueElements;
+    // Snapshot of the current value, null when none was requested since the value last changed
+    private ValueSnapshot snapshot = null;
+    // Whether snapshots still read the styled value, so that it must not be changed
+    private boolean styledValueShared = false;
     protected int pauseindex;
     protected int pausedelay;
     protected int pauseduration;
@@ -45,20 +50,19 @@ public class TickerText implements Cloneable {
     }
 
     public void setTo(String text) {
+        this.unshareStyledValue();
         this.styledValue.setTo(text);
-        this.value = this.styledValueElements.isDefault() ? text : this.styledValueElements.stringify();
+        this.value = this.styledValueElements.isDefault() ? text : null;
     }
 
     public void setToDefault(String variableName) {
         String text = "%" + variableName + "%";
-        int len = text.length();
 
+        this.unshareStyledValue();
         this.styledValue.clear();
         this.styledValue.setStartStyle(StyledCharacter.INITIAL_STYLE);
-        for (int i = 0; i < len; i++) {
-            this.styledValue.add(new StyledCharacter(text.charAt(i)));
-        }
-        this.value = this.styledValueElements.isDefault() ? text : this.styledValueElements.stringify();
+        this.styledValue.appendUnstyled(text);
+        this.value = this.styledValueElements.isDefault() ? text : null;
     }
 
     /**
@@ -67,7 +71,65 @@ public class TickerText implements Cloneable {
      * @return text value
      */
     public String get() {
-        return this.value;
+        String value = this.value;
+        if (value == null) {
+            this.value = value = this.styledValueElements.stringify();
+        }
+        return value;
+    }
+
+    /**
+     * Gets a snapshot of the current text value. The snapshot keeps this value when
+     * the text changes or scrolls afterwards, and only turns it into text once its
+     * value is requested.
+     *
+     * @return snapshot of the current text value
+     */
+    public ValueSnapshot getValueSnapshot() {
+        ValueSnapshot snapshot = this.snapshot;
+        if (snapshot == null) {
+            if (this.value != null) {
+                snapshot = new ValueSnapshot(this.value, null);
+            } else {
+                snapshot = new ValueSnapshot(null, this.styledValueElements.withValue(this.styledValue));
+                this.styledValueShared = true;
+            }
+            this.snapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    // Snapshots keep reading the styled value they were taken of, so a new one is used
+    // when the text changes instead
+    private void unshareStyledValue() {
+        this.snapshot = null;
+        if (this.styledValueShared) {
+            StyledString newStyledValue = new StyledString();
+            newStyledValue.setStartStyle(this.styledValue.getStartStyle());
+            this.styledValue = newStyledValue;
+            if (this.styledValueElements instanceof ShiftedText) {
+                this.styledValueElements = ((ShiftedText) this.styledValueElements).withValue(newStyledValue);
+            }
+            this.styledValueShared = false;
+        }
+    }
+
+    /**
+     * Gets the current text value, leaving out the characters at the end that are not
+     * needed to fill a width. While scrolling, only the characters that fill the width
+     * are turned into text, so that long text does not have to be converted every time.
+     * The text value returned starts the same as {@link #get()}, including the style
+     * at the start. More characters than needed may be included.
+     *
+     * @param width Pixel width to fill, the returned characters are wider than this
+     * @return text value filling the width
+     */
+    public String getVisibleText(int width) {
+        if (this.value == null && this.styledValueElements instanceof ShiftedText) {
+            return ((ShiftedText) this.styledValueElements).stringify(width);
+        } else {
+            return get();
+        }
     }
 
     /**
@@ -79,9 +141,10 @@ public class TickerText implements Cloneable {
     public String none() {
         if (!this.styledValueElements.isDefault()) {
             this.styledValueElements = new ShiftedText(this.styledValue);
-            this.value = this.styledValueElements.stringify();
+            this.value = null;
+            this.snapshot = null;
         }
-        return this.value;
+        return get();
     }
 
     /**
@@ -96,8 +159,9 @@ public class TickerText implements Cloneable {
             this.styledValueElements = new BlinkOffText(this.styledValue);
         }
 
-        this.value = this.styledValueElements.stringify();
-        return this.value;
+        this.value = null;
+        this.snapshot = null;
+        return get();
     }
 
     /**
@@ -106,14 +170,21 @@ public class TickerText implements Cloneable {
      * @return Next value
      */
     public String left() {
+        this.shiftLeft();
+        return get();
+    }
+
+    /**
+     * Ticks the text to the left, without computing the next value yet
+     */
+    public void shiftLeft() {
         if (!(this.styledValueElements instanceof ShiftedText)) {
             this.styledValueElements = new ShiftedText(this.styledValue);
         } else {
             ((ShiftedText) this.styledValueElements).shiftLeft();
         }
-
-        this.value = this.styledValueElements.stringify();
-        return this.value;
+        this.value = null;
+        this.snapshot = null;
     }
 
     /**
@@ -122,14 +193,21 @@ public class TickerText implements Cloneable {
      * @return Next value
      */
     public String right() {
+        this.shiftRight();
+        return get();
+    }
+
+    /**
+     * Ticks the text to the right, without computing the next value yet
+     */
+    public void shiftRight() {
         if (!(this.styledValueElements instanceof ShiftedText)) {
             this.styledValueElements = new ShiftedText(this.styledValue);
         } else {
             ((ShiftedText) this.styledValueElements).shiftRight();
         }
-
-        this.value = this.styledValueElements.stringify();
-        return this.value;
+        this.value = null;
+        this.snapshot = null;
     }
 
     /**
@@ -147,6 +225,34 @@ public class TickerText implements Cloneable {
         return result;
     }
 
+    /**
+     * Text value of ticker text at the time the snapshot was taken. The value is
+     * turned into text when it is first requested.
+     */
+    public static final class ValueSnapshot {
+        private String value;
+        private StyledElementSequence elements;
+
+        private ValueSnapshot(String value, StyledElementSequence elements) {
+            this.value = value;
+            this.elements = elements;
+        }
+
+        /**
+         * Gets the text value
+         *
+         * @return text value
+         */
+        public String get() {
+            String value = this.value;
+            if (value == null) {
+                this.value = value = this.elements.stringify();
+                this.elements = null;
+            }
+            return value;
+        }
+    }
+
     private interface StyledElementSequence extends Iterable<StyledCharacter> {
         boolean isDefault();
         StyledElementSequence withValue(StyledString value);
@@ -246,6 +352,51 @@ public class TickerText implements Cloneable {
             }
         }
 
+        @Override
+        public String stringify() {
+            if (shiftOffset == 0 || value.isEmpty()) {
+                return value.toString();
+            }
+
+            // Rotate the characters without creating a styled character for each
+            int offset = shiftOffset % value.size();
+            StyledString shifted = new StyledString();
+            shifted.append(value, offset, value.size());
+            shifted.append(value, 0, offset);
+            return shifted.toString();
+        }
+
+        /**
+         * Stringifies only the first characters of the shifted text that are wider than a width
+         *
+         * @param width Pixel width to fill
+         * @return text value
+         */
+        public String stringify(int width) {
+            int size = value.size();
+            if (size == 0) {
+                return value.toString();
+            }
+
+            int offset = shiftOffset % size;
+            int count = 0;
+            int totalWidth = 0;
+            while (count < size && totalWidth <= width) {
+                totalWidth += value.getWidth((offset + count) % size);
+                count++;
+            }
+            if (count == size) {
+                return stringify();
+            }
+
+            StyledString visible = new StyledString();
+            visible.append(value, offset, Math.min(size, offset + count));
+            if (offset + count > size) {
+                visible.append(value, 0, offset + count - size);
+            }
+            return visible.toString();
+        }
+
         @Override
         public Iterator<StyledCharacter> iterator() {
             if (shiftOffset == 0) {
@@ -11,8 +11,9 @@ import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 
+import com.bergerkiller.bukkit.common.block.SignSide;
 import com.bergerkiller.bukkit.common.collections.ImplicitlySharedList;
-import com.bergerkiller.bukkit.common.utils.BlockUtil;
+import com.bergerkiller.bukkit.common.offline.OfflineBlock;
 import com.bergerkiller.bukkit.common.utils.CommonUtil;
 import com.bergerkiller.bukkit.common.utils.LogicUtil;
 import com.bergerkiller.bukkit.sl.LinkedSign;
@@ -182,6 +183,26 @@ public class VariableImpl extends Variable {
         return this.boundTo;
     }
 
+    @Override
+    protected LinkedSign findLocation(OfflineBlock signblock, SignSide side, int lineAt) {
+        return map.findSign(this, signblock, side, lineAt);
+    }
+
+    @Override
+    protected List<LinkedSign> findLocations(OfflineBlock signblock) {
+        return map.findSigns(this, signblock);
+    }
+
+    @Override
+    protected void onLocationAdded(LinkedSign sign) {
+        map.indexSign(this, sign);
+    }
+
+    @Override
+    protected void onLocationRemoved(LinkedSign sign) {
+        map.unindexSign(this, sign);
+    }
+
     /**
      * Updates a single sign
      * 
@@ -189,10 +210,8 @@ public class VariableImpl extends Variable {
      */
     public void update(Block signBlock) {
         if (signBlock != null) {
-            for (LinkedSign sign : getSigns()) {
-                if (BlockUtil.equals(signBlock, sign.getStartBlock())) {
-                    updateSign(sign);
-                }
+            for (LinkedSign sign : map.findSigns(this, OfflineBlock.of(signBlock))) {
+                updateSign(sign);
             }
         }
     }
@@ -252,17 +271,12 @@ public class VariableImpl extends Variable {
     }
 
     public boolean find(List<LinkedSign> signs, List<VariableImpl> variables, Block at) {
-        boolean found = false;
-        for (LinkedSign sign : boundTo) {
-            if (sign.location.getX() == at.getX() && sign.location.getY() == at.getY() && sign.location.getZ() == at.getZ()) {
-                if (sign.location.getLoadedWorld() == at.getWorld()) {
-                    found = true;
-                    if (signs != null) signs.add(sign);
-                    if (variables != null) variables.add(this);
-                }
-            }
+        List<LinkedSign> found = map.findSigns(this, OfflineBlock.of(at));
+        for (LinkedSign sign : found) {
+            if (signs != null) signs.add(sign);
+            if (variables != null) variables.add(this);
         }
-        return found;
+        return !found.isEmpty();
     }
 
     public boolean find(List<LinkedSign> signs, List<VariableImpl> variables, Location at) {
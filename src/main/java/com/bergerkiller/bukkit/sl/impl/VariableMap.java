@@ -1,6 +1,7 @@
 package com.bergerkiller.bukkit.sl.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.function.Consumer;
@@ -8,7 +9,9 @@ import java.util.function.Consumer;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
 
+import com.bergerkiller.bukkit.common.block.SignSide;
 import com.bergerkiller.bukkit.common.collections.ImplicitlySharedSet;
+import com.bergerkiller.bukkit.common.offline.OfflineBlock;
 import com.bergerkiller.bukkit.sl.LinkedSign;
 import com.bergerkiller.bukkit.sl.API.Variable;
 
@@ -25,6 +28,7 @@ public class VariableMap {
 
     private final HashMap<String, VariableImpl> variablesMap = new HashMap<String, VariableImpl>();
     private final ImplicitlySharedSet<VariableImpl> variablesSet = new ImplicitlySharedSet<VariableImpl>();
+    private final HashMap<OfflineBlock, List<BoundSign>> signsByBlock = new HashMap<OfflineBlock, List<BoundSign>>();
 
     /**
      * Callback called when a variable was deleted
@@ -55,6 +59,7 @@ public class VariableMap {
     public synchronized void deinit() {
         variablesMap.clear();
         variablesSet.clear();
+        signsByBlock.clear();
     }
 
     /**
@@ -166,9 +171,12 @@ public class VariableMap {
      * @return True if the variable was removed, False if it was not found
      */
     public synchronized boolean remove(String name) {
-        Variable var = variablesMap.remove(name);
+        VariableImpl var = variablesMap.remove(name);
         if (var != null) {
             variablesSet.remove(var);
+            for (LinkedSign sign : var.getBoundTo().cloneAsIterable()) {
+                unindexSign(var, sign);
+            }
             onVariableRemoved(var);
             return true;
         }
@@ -187,13 +195,15 @@ public class VariableMap {
      * @return True if something was found, False if not
      */
     public synchronized boolean find(List<LinkedSign> signs, List<VariableImpl> variables, Block at) {
-        boolean found = false;
-        for (VariableImpl var : variablesSet.cloneAsIterable()) {
-            if (var.find(signs, variables, at)) {
-                found = true;
-            }
+        List<BoundSign> bound = signsByBlock.get(OfflineBlock.of(at));
+        if (bound == null) {
+            return false;
         }
-        return found;
+        for (BoundSign b : bound) {
+            if (signs != null) signs.add(b.sign);
+            if (variables != null) variables.add(b.variable);
+        }
+        return true;
     }
 
     /**
@@ -211,6 +221,110 @@ public class VariableMap {
         return find(signs, variables, at.getBlock());
     }
 
+    /**
+     * Removes all the linked signs displayed on a sign block from the variables
+     * that display them.
+     *
+     * @param signBlock Sign block
+     * @return True if linked signs were found and removed, False if not
+     */
+    public boolean removeLocations(OfflineBlock signBlock) {
+        // Copy, as removing locations updates the same list
+        List<BoundSign> bound;
+        synchronized (this) {
+            bound = signsByBlock.get(signBlock);
+            if (bound == null) {
+                return false;
+            }
+            bound = new ArrayList<BoundSign>(bound);
+        }
+
+        boolean removed = false;
+        for (BoundSign b : bound) {
+            removed |= b.variable.removeLocation(b.sign);
+        }
+        return removed;
+    }
+
+    /**
+     * Gets all the linked signs a variable is displayed on at a sign block
+     *
+     * @param variable Variable
+     * @param signBlock Sign block
+     * @return List of linked signs for this variable at this block, empty if none
+     */
+    synchronized List<LinkedSign> findSigns(VariableImpl variable, OfflineBlock signBlock) {
+        List<BoundSign> bound = signsByBlock.get(signBlock);
+        if (bound == null) {
+            return Collections.emptyList();
+        }
+        List<LinkedSign> result = new ArrayList<LinkedSign>(bound.size());
+        for (BoundSign b : bound) {
+            if (b.variable == variable) {
+                result.add(b.sign);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the linked sign a variable is displayed on at a sign block, side and line
+     *
+     * @param variable Variable
+     * @param signBlock Sign block
+     * @param side Side of the sign
+     * @param line Line of the sign
+     * @return Linked sign at this line, or null if none is stored
+     */
+    synchronized LinkedSign findSign(VariableImpl variable, OfflineBlock signBlock, SignSide side, int line) {
+        List<BoundSign> bound = signsByBlock.get(signBlock);
+        if (bound != null) {
+            for (BoundSign b : bound) {
+                if (b.variable == variable && b.sign.line == line && b.sign.getSide() == side) {
+                    return b.sign;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Called by a variable after a linked sign was added to it
+     *
+     * @param variable Variable
+     * @param sign Linked sign that was added
+     */
+    synchronized void indexSign(VariableImpl variable, LinkedSign sign) {
+        signsByBlock.computeIfAbsent(sign.location, b -> new ArrayList<BoundSign>(2))
+                    .add(new BoundSign(sign, variable));
+    }
+
+    /**
+     * Called by a variable after a linked sign was removed from it
+     *
+     * @param variable Variable
+     * @param sign Linked sign that was removed
+     */
+    synchronized void unindexSign(VariableImpl variable, LinkedSign sign) {
+        List<BoundSign> bound = signsByBlock.get(sign.location);
+        if (bound != null && bound.removeIf(b -> b.sign == sign && b.variable == variable) && bound.isEmpty()) {
+            signsByBlock.remove(sign.location);
+        }
+    }
+
+    /**
+     * A linked sign paired with the variable displayed on it
+     */
+    private static final class BoundSign {
+        public final LinkedSign sign;
+        public final VariableImpl variable;
+
+        public BoundSign(LinkedSign sign, VariableImpl variable) {
+            this.sign = sign;
+            this.variable = variable;
+        }
+    }
+
     enum ChangeState {
         UNCHANGED,
         CREATED,
@@ -1,20 +1,21 @@
 package com.bergerkiller.bukkit.sl.impl;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import com.bergerkiller.bukkit.common.collections.ImplicitlySharedList;
 import com.bergerkiller.bukkit.sl.LinkedSign;
+import com.bergerkiller.bukkit.sl.PlayerHandleRegistry;
 import com.bergerkiller.bukkit.sl.VariableTextPlayerFilter;
 import com.bergerkiller.bukkit.sl.API.PlayerVariable;
 import com.bergerkiller.bukkit.sl.API.Ticker;
 import com.bergerkiller.bukkit.sl.impl.format.FormatChangeListener;
 import com.bergerkiller.bukkit.sl.impl.format.FormattedVariableValue;
+import com.bergerkiller.bukkit.sl.util.IntObjectHashMap;
 
 /**
  * Tracks internal metadata about what variable value and ticker
@@ -23,13 +24,15 @@ import com.bergerkiller.bukkit.sl.impl.format.FormattedVariableValue;
 public class VariableValueMap {
     private final VariableImpl variable;
     private final Entry defaultEntry;
-    private Map<String, Entry> byPlayer;
+    private final IntObjectHashMap<Entry> byPlayer;
+    private VariableTextPlayerFilter defaultEntryFilter;
     private int numTickedPlayerEntries;
 
     public VariableValueMap(VariableImpl variable) {
         this.variable = variable;
         this.defaultEntry = new Entry();
-        this.byPlayer = Collections.emptyMap();
+        this.byPlayer = new IntObjectHashMap<Entry>();
+        this.defaultEntryFilter = VariableTextPlayerFilter.all();
         this.numTickedPlayerEntries = 0;
     }
 
@@ -60,6 +63,22 @@ public class VariableValueMap {
         return this.byPlayer.values();
     }
 
+    /**
+     * Gets the filter of players the default entry text is shown to.
+     * This is all players, except the players that have an entry of their own.
+     *
+     * @return default entry player filter
+     */
+    private VariableTextPlayerFilter getDefaultEntryFilter() {
+        VariableTextPlayerFilter filter = this.defaultEntryFilter;
+        if (filter == null) {
+            final BitSet handles = new BitSet();
+            this.byPlayer.forEach((playerHandle, e) -> handles.set(playerHandle));
+            this.defaultEntryFilter = filter = VariableTextPlayerFilter.allExceptHandles(handles);
+        }
+        return filter;
+    }
+
     /**
      * Gets all the player variables that have a custom variable
      * value or ticker set
@@ -96,7 +115,7 @@ public class VariableValueMap {
      * @return variable value
      */
     public String getValue(String playerName) {
-        return this.byPlayer.getOrDefault(playerName, defaultEntry).value.getFormat();
+        return this.getPlayerEntryOrDefault(playerName).value.getFormat();
     }
 
     /**
@@ -106,7 +125,7 @@ public class VariableValueMap {
      * @return text displayed to this player
      */
     public String getText(String playerName) {
-        return this.byPlayer.getOrDefault(playerName, defaultEntry).getText();
+        return this.getPlayerEntryOrDefault(playerName).getText();
     }
 
     /**
@@ -181,7 +200,7 @@ public class VariableValueMap {
         // Make sure it still exists at all, as things could break otherwise!
         // Do not count the default entry
         if (entry == this.defaultEntry
-                || this.byPlayer.get(entry.playerName) != entry
+                || this.byPlayer.get(entry.playerHandle) != entry
                 || entry.ticker != ticker)
         {
             return;
@@ -253,20 +272,31 @@ public class VariableValueMap {
      * @return unique entry for this player
      */
     public Entry getPlayerEntry(String playerName) {
-        if (this.byPlayer.isEmpty()) {
-            // Initialize a new HashMap to store it
-            this.byPlayer = new HashMap<String, Entry>();
-        } else {
-            // Try to find an existing entry in the map
-            Entry e = this.byPlayer.get(playerName);
-            if (e != null) {
-                return e;
-            }
+        return getPlayerEntry(PlayerHandleRegistry.INSTANCE.getHandle(playerName));
+    }
+
+    /**
+     * Gets a unique entry for a player, where changes made to it
+     * will only affect the text displayed to that one player.
+     * When a new entry is created, it will initially have the
+     * default variable value.
+     *
+     * @param playerHandle Handle of the player
+     * @return unique entry for this player
+     */
+    public Entry getPlayerEntry(int playerHandle) {
+        // Try to find an existing entry in the map
+        Entry e = this.byPlayer.get(playerHandle);
+        if (e != null) {
+            return e;
         }
 
         // Create a new entry and store it
-        Entry e = new Entry(playerName);
-        this.byPlayer.put(playerName, e);
+        // The entry is never removed, so the handle of the player is kept
+        e = new Entry(playerHandle);
+        this.byPlayer.put(playerHandle, e);
+        PlayerHandleRegistry.INSTANCE.retain(playerHandle);
+        this.defaultEntryFilter = null;
 
         // Clone the default value
         // Initialize value of the entry (AFTER adding to the map!)
@@ -298,7 +328,7 @@ public class VariableValueMap {
                     .map(Entry::getValueMap)
                     .collect(Collectors.toSet());
             for (VariableValueMap map : declaringMaps) {
-                map.getPlayerEntry(e.playerName);
+                map.getPlayerEntry(e.playerHandle);
             }
         }
 
@@ -313,7 +343,21 @@ public class VariableValueMap {
      * @return unique entry for this player, or default if none exists
      */
     public Entry getPlayerEntryOrDefault(String playerName) {
-        return this.byPlayer.getOrDefault(playerName, this.defaultEntry);
+        if (playerName == null) {
+            return this.defaultEntry;
+        }
+        return getPlayerEntryOrDefault(PlayerHandleRegistry.INSTANCE.findHandle(playerName));
+    }
+
+    /**
+     * Gets a unique entry for a player if one is stored, or
+     * otherwise returns the default entry
+     *
+     * @param playerHandle Handle of the player, or {@link PlayerHandleRegistry#NO_HANDLE}
+     * @return unique entry for this player, or default if none exists
+     */
+    public Entry getPlayerEntryOrDefault(int playerHandle) {
+        return this.byPlayer.getOrDefault(playerHandle, this.defaultEntry);
     }
 
     /**
@@ -324,6 +368,12 @@ public class VariableValueMap {
         // Name of the player for who this entry is, all-lowercase
         // Is null for the default entry
         public final String playerName;
+        // Handle of the player for who this entry is
+        // Is NO_HANDLE for the default entry
+        public final int playerHandle;
+        // Filter that includes only the player of this entry
+        // Is null for the default entry
+        private final VariableTextPlayerFilter playerFilter;
         // Whether the current value is set unique for this player
         private boolean hasCustomValue;
         // Formatted variable value for this player, input for text
@@ -342,6 +392,8 @@ public class VariableValueMap {
             String variableName = getVariableName();
 
             this.playerName = null;
+            this.playerHandle = PlayerHandleRegistry.NO_HANDLE;
+            this.playerFilter = null;
             this.hasCustomValue = false;
             this.value = FormattedVariableValue.createDefaultValue(variableName);
             this.text = TickerText.createDefaultValue(variableName);
@@ -353,8 +405,10 @@ public class VariableValueMap {
         // Only used to initialize an entry, reads from the default value
         // Note that no events fire during construction, which should be
         // done by the caller
-        private Entry(String playerName) {
-            this.playerName = playerName;
+        private Entry(int playerHandle) {
+            this.playerName = PlayerHandleRegistry.INSTANCE.getName(playerHandle);
+            this.playerHandle = playerHandle;
+            this.playerFilter = VariableTextPlayerFilter.onlyHandle(playerHandle);
             this.hasCustomValue = false;
             this.value = defaultEntry.value;
             this.text = defaultEntry.text.clone();
@@ -592,13 +646,13 @@ public class VariableValueMap {
             VariableTextPlayerFilter filter;
             if (this.playerName != null) {
                 // Only for one player
-                filter = VariableTextPlayerFilter.only(this.playerName);
+                filter = this.playerFilter;
             } else {
                 // Only for all players that do not have their own entry
-                filter = VariableTextPlayerFilter.allExcept(VariableValueMap.this.byPlayer.keySet());
+                filter = getDefaultEntryFilter();
             }
             for (LinkedSign sign : signs) {
-                sign.setText(this.text.get(), this.ticker.hasWrapAround(), filter);
+                sign.setText(this.text, this.ticker.hasWrapAround(), filter);
             }
         }
 
@@ -610,7 +664,7 @@ public class VariableValueMap {
             // that exists.
             if (this.isDefaultEntry()) {
                 for (Entry e : entry.getValueMap().getPlayerEntries()) {
-                    VariableValueMap.this.getPlayerEntry(e.playerName);
+                    VariableValueMap.this.getPlayerEntry(e.playerHandle);
                 }
             }
 
@@ -154,10 +154,10 @@ public class FormattedVariableValue {
          * Creates a new clone of this token, but for
          * a different player
          *
-         * @param playerName name of the Player, all-lowercase
+         * @param playerHandle handle of the Player
          * @return token clone
          */
-        public abstract Token cloneForPlayer(String playerName);
+        public abstract Token cloneForPlayer(int playerHandle);
     }
 
     // Displays a constant snippet of text
@@ -174,7 +174,7 @@ public class FormattedVariableValue {
         }
 
         @Override
-        public Token cloneForPlayer(String playerName) {
+        public Token cloneForPlayer(int playerHandle) {
             return new ConstantToken(this.text);
         }
     }
@@ -255,12 +255,12 @@ public class FormattedVariableValue {
         }
 
         @Override
-        public Token cloneForPlayer(String playerName) {
+        public Token cloneForPlayer(int playerHandle) {
             VariableValueMap.Entry newEntry;
-            if (playerName != null && playerName.equals(this.entry.playerName)) {
+            if (playerHandle == this.entry.playerHandle) {
                 newEntry = this.entry;
             } else {
-                newEntry = this.entry.getValueMap().getPlayerEntryOrDefault(playerName);
+                newEntry = this.entry.getValueMap().getPlayerEntryOrDefault(playerHandle);
             }
             return new VariableToken(newEntry);
         }
@@ -309,7 +309,7 @@ public class FormattedVariableValue {
         }
 
         public void onClone(Token token) {
-            store(token.cloneForPlayer(this.owner.playerName));
+            store(token.cloneForPlayer(this.owner.playerHandle));
         }
 
         @Override
@@ -320,7 +320,7 @@ public class FormattedVariableValue {
         @Override
         public void onVariable(String variableName) {
             VariableValueMap valueMap = variables.get(variableName).getValueMap();
-            VariableValueMap.Entry entry = valueMap.getPlayerEntryOrDefault(this.owner.playerName);
+            VariableValueMap.Entry entry = valueMap.getPlayerEntryOrDefault(this.owner.playerHandle);
             store(new VariableToken(entry));
         }
 
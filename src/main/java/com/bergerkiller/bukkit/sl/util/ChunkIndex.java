@@ -0,0 +1,180 @@
+package com.bergerkiller.bukkit.sl.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Spatial index that groups values by world, and then by the chunk
+ * coordinates they are in. Allows for efficiently visiting the values
+ * in a range of chunks, or dropping all values of a chunk or world at once.<br>
+ * <br>
+ * Values must not be added to or removed from this index while iterating
+ * it using one of the forEach methods.
+ *
+ * @param <W> World key type
+ * @param <V> Value type
+ */
+public class ChunkIndex<W, V> {
+    private final Map<W, Map<Long, List<V>>> worlds = new HashMap<>();
+
+    /**
+     * Adds a value to the chunk bucket at the chunk coordinates specified
+     *
+     * @param world World key
+     * @param chunkX Chunk X-coordinate
+     * @param chunkZ Chunk Z-coordinate
+     * @param value Value to add
+     */
+    public void add(W world, int chunkX, int chunkZ, V value) {
+        worlds.computeIfAbsent(world, w -> new HashMap<>())
+              .computeIfAbsent(key(chunkX, chunkZ), k -> new ArrayList<>(4))
+              .add(value);
+    }
+
+    /**
+     * Removes a value from the chunk bucket at the chunk coordinates specified.
+     * Empty buckets and worlds are cleaned up automatically.
+     *
+     * @param world World key
+     * @param chunkX Chunk X-coordinate
+     * @param chunkZ Chunk Z-coordinate
+     * @param value Value to remove
+     * @return True if the value was found and removed
+     */
+    public boolean remove(W world, int chunkX, int chunkZ, V value) {
+        Map<Long, List<V>> chunks = worlds.get(world);
+        if (chunks == null) {
+            return false;
+        }
+
+        Long key = key(chunkX, chunkZ);
+        List<V> bucket = chunks.get(key);
+        if (bucket == null || !bucket.remove(value)) {
+            return false;
+        }
+
+        if (bucket.isEmpty()) {
+            chunks.remove(key);
+            if (chunks.isEmpty()) {
+                worlds.remove(world);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all values stored in a single chunk
+     *
+     * @param world World key
+     * @param chunkX Chunk X-coordinate
+     * @param chunkZ Chunk Z-coordinate
+     * @return List of values that were removed, empty if none were stored
+     */
+    public List<V> removeChunk(W world, int chunkX, int chunkZ) {
+        Map<Long, List<V>> chunks = worlds.get(world);
+        if (chunks == null) {
+            return Collections.emptyList();
+        }
+
+        List<V> bucket = chunks.remove(key(chunkX, chunkZ));
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        if (chunks.isEmpty()) {
+            worlds.remove(world);
+        }
+        return bucket;
+    }
+
+    /**
+     * Removes all values stored on a world
+     *
+     * @param world World key
+     * @return List of values that were removed, empty if none were stored
+     */
+    public List<V> removeWorld(W world) {
+        Map<Long, List<V>> chunks = worlds.remove(world);
+        if (chunks == null) {
+            return Collections.emptyList();
+        }
+
+        List<V> result = new ArrayList<>();
+        for (List<V> bucket : chunks.values()) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    /**
+     * Supplies a consumer with all values stored in a single chunk
+     *
+     * @param world World key
+     * @param chunkX Chunk X-coordinate
+     * @param chunkZ Chunk Z-coordinate
+     * @param action Consumer to supply values to
+     */
+    public void forEachInChunk(W world, int chunkX, int chunkZ, Consumer<? super V> action) {
+        Map<Long, List<V>> chunks = worlds.get(world);
+        if (chunks != null) {
+            List<V> bucket = chunks.get(key(chunkX, chunkZ));
+            if (bucket != null) {
+                bucket.forEach(action);
+            }
+        }
+    }
+
+    /**
+     * Supplies a consumer with all values stored in an (inclusive) area of chunks
+     *
+     * @param world World key
+     * @param minChunkX Minimum chunk X-coordinate
+     * @param minChunkZ Minimum chunk Z-coordinate
+     * @param maxChunkX Maximum chunk X-coordinate
+     * @param maxChunkZ Maximum chunk Z-coordinate
+     * @param action Consumer to supply values to
+     */
+    public void forEachInChunkRange(W world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, Consumer<? super V> action) {
+        Map<Long, List<V>> chunks = worlds.get(world);
+        if (chunks == null) {
+            return;
+        }
+
+        // When the area is larger than the number of chunks stored, iterate the chunks instead
+        long area = (long) (maxChunkX - minChunkX + 1) * (long) (maxChunkZ - minChunkZ + 1);
+        if (area > chunks.size()) {
+            for (Map.Entry<Long, List<V>> entry : chunks.entrySet()) {
+                long key = entry.getKey().longValue();
+                int chunkX = (int) (key >> 32);
+                int chunkZ = (int) key;
+                if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) {
+                    entry.getValue().forEach(action);
+                }
+            }
+            return;
+        }
+
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                List<V> bucket = chunks.get(key(chunkX, chunkZ));
+                if (bucket != null) {
+                    bucket.forEach(action);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all values from this index
+     */
+    public void clear() {
+        worlds.clear();
+    }
+
+    private static Long key(int chunkX, int chunkZ) {
+        return Long.valueOf(((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL));
+    }
+}
@@ -0,0 +1,301 @@
+package com.bergerkiller.bukkit.sl.util;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash map with primitive int keys, avoiding the boxing and hashing overhead
+ * of a HashMap&lt;Integer, V&gt;. Uses open addressing with linear probing.
+ * Null values are not supported. This class is not thread-safe, but a map
+ * that is no longer modified can be read by multiple threads at once.
+ *
+ * @param <V> Value type
+ */
+public class IntObjectHashMap<V> {
+    private static final int[] NO_KEYS = new int[0];
+    private static final Object[] NO_VALUES = new Object[0];
+    private int[] keys = NO_KEYS;
+    private Object[] values = NO_VALUES;
+    private int size = 0;
+    private int modCount = 0;
+    private Values valuesView = null;
+
+    public IntObjectHashMap() {
+    }
+
+    /**
+     * Creates a copy of another map
+     *
+     * @param map Map to copy
+     */
+    public IntObjectHashMap(IntObjectHashMap<V> map) {
+        if (map.size > 0) {
+            this.keys = map.keys.clone();
+            this.values = map.values.clone();
+            this.size = map.size;
+        }
+    }
+
+    /**
+     * Gets the number of entries stored in this map
+     *
+     * @return size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Gets whether this map has no entries
+     *
+     * @return True if empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Gets the value stored for a key
+     *
+     * @param key Key
+     * @return value, or null if not stored
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int index = indexOf(key);
+        return (index == -1) ? null : (V) this.values[index];
+    }
+
+    /**
+     * Gets the value stored for a key, or a default value if not stored
+     *
+     * @param key Key
+     * @param defaultValue Value to return if the key is not stored
+     * @return value, or the default value if not stored
+     */
+    public V getOrDefault(int key, V defaultValue) {
+        V value = get(key);
+        return (value == null) ? defaultValue : value;
+    }
+
+    /**
+     * Gets whether a value is stored for a key
+     *
+     * @param key Key
+     * @return True if stored
+     */
+    public boolean containsKey(int key) {
+        return indexOf(key) != -1;
+    }
+
+    /**
+     * Stores a value for a key
+     *
+     * @param key Key
+     * @param value Value to store, can not be null
+     * @return previous value stored for the key, or null if none was
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        if ((this.size + 1) * 4 > this.values.length * 3) {
+            resize(Math.max(8, this.values.length * 2));
+        }
+
+        int mask = this.values.length - 1;
+        int index = mix(key) & mask;
+        Object existing;
+        while ((existing = this.values[index]) != null) {
+            if (this.keys[index] == key) {
+                this.values[index] = value;
+                return (V) existing;
+            }
+            index = (index + 1) & mask;
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+        this.size++;
+        this.modCount++;
+        return null;
+    }
+
+    /**
+     * Removes the value stored for a key
+     *
+     * @param key Key
+     * @return value that was removed, or null if none was stored
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int index = indexOf(key);
+        if (index == -1) {
+            return null;
+        }
+        V removed = (V) this.values[index];
+        removeAt(index);
+        return removed;
+    }
+
+    /**
+     * Removes all entries from this map
+     */
+    public void clear() {
+        if (this.size > 0) {
+            Arrays.fill(this.values, null);
+            this.size = 0;
+            this.modCount++;
+        }
+    }
+
+    /**
+     * Supplies all keys and values stored in this map to a consumer.
+     * The map must not be modified while doing so.
+     *
+     * @param action Consumer
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        int expectedModCount = this.modCount;
+        int[] keys = this.keys;
+        Object[] values = this.values;
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value != null) {
+                action.accept(keys[i], (V) value);
+                if (expectedModCount != this.modCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a read-only view of the values stored in this map. The map
+     * must not be modified while iterating it.
+     *
+     * @return values
+     */
+    public Collection<V> values() {
+        Values view = this.valuesView;
+        if (view == null) {
+            this.valuesView = view = new Values();
+        }
+        return view;
+    }
+
+    private int indexOf(int key) {
+        if (this.size == 0) {
+            return -1;
+        }
+        int mask = this.values.length - 1;
+        int index = mix(key) & mask;
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Removes an entry, shifting back entries that follow in the same probe sequence
+    private void removeAt(int index) {
+        int mask = this.values.length - 1;
+        int hole = index;
+        int next = (index + 1) & mask;
+        while (this.values[next] != null) {
+            int desired = mix(this.keys[next]) & mask;
+            // Move the entry into the hole if its desired slot is not between hole and next
+            if (((next - desired) & mask) >= ((next - hole) & mask)) {
+                this.keys[hole] = this.keys[next];
+                this.values[hole] = this.values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.values[hole] = null;
+        this.size--;
+        this.modCount++;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = mix(oldKeys[i]) & mask;
+                while (this.values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Accepts a key and value stored in the map
+     *
+     * @param <V> Value type
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public int size() {
+            return IntObjectHashMap.this.size;
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new Iterator<V>() {
+                private final int expectedModCount = modCount;
+                private int index = advance(0);
+
+                private int advance(int from) {
+                    Object[] values = IntObjectHashMap.this.values;
+                    while (from < values.length && values[from] == null) {
+                        from++;
+                    }
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return this.index < IntObjectHashMap.this.values.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public V next() {
+                    if (this.expectedModCount != modCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    V value = (V) IntObjectHashMap.this.values[this.index];
+                    this.index = advance(this.index + 1);
+                    return value;
+                }
+            };
+        }
+    }
+}
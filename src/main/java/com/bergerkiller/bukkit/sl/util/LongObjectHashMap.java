@@ -0,0 +1,182 @@
+package com.bergerkiller.bukkit.sl.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash map with primitive long keys, avoiding the boxing and hashing overhead
+ * of a HashMap&lt;Long, V&gt;. Uses open addressing with linear probing.
+ * Null values are not supported. This class is not thread-safe, but a map
+ * that is no longer modified can be read by multiple threads at once.
+ *
+ * @param <V> Value type
+ */
+public class LongObjectHashMap<V> {
+    private static final long[] NO_KEYS = new long[0];
+    private static final Object[] NO_VALUES = new Object[0];
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    public LongObjectHashMap() {
+        this.keys = NO_KEYS;
+        this.values = NO_VALUES;
+        this.size = 0;
+    }
+
+    /**
+     * Creates a copy of another map
+     *
+     * @param map Map to copy
+     */
+    public LongObjectHashMap(LongObjectHashMap<V> map) {
+        this.keys = (map.size == 0) ? NO_KEYS : map.keys.clone();
+        this.values = (map.size == 0) ? NO_VALUES : map.values.clone();
+        this.size = map.size;
+    }
+
+    /**
+     * Gets the number of entries stored in this map
+     *
+     * @return size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Gets whether this map has no entries
+     *
+     * @return True if empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Gets the value stored for a key
+     *
+     * @param key Key
+     * @return value, or null if not stored
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int index = indexOf(key);
+        return (index == -1) ? null : (V) this.values[index];
+    }
+
+    /**
+     * Stores a value for a key
+     *
+     * @param key Key
+     * @param value Value to store, can not be null
+     * @return previous value stored for the key, or null if none was
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        if ((this.size + 1) * 4 > this.values.length * 3) {
+            resize(Math.max(8, this.values.length * 2));
+        }
+
+        int mask = this.values.length - 1;
+        int index = mix(key) & mask;
+        Object existing;
+        while ((existing = this.values[index]) != null) {
+            if (this.keys[index] == key) {
+                this.values[index] = value;
+                return (V) existing;
+            }
+            index = (index + 1) & mask;
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+        this.size++;
+        return null;
+    }
+
+    /**
+     * Removes the value stored for a key
+     *
+     * @param key Key
+     * @return value that was removed, or null if none was stored
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int index = indexOf(key);
+        if (index == -1) {
+            return null;
+        }
+        V removed = (V) this.values[index];
+        removeAt(index);
+        return removed;
+    }
+
+    /**
+     * Removes all entries from this map
+     */
+    public void clear() {
+        if (this.size > 0) {
+            Arrays.fill(this.values, null);
+            this.size = 0;
+        }
+    }
+
+    private int indexOf(long key) {
+        if (this.size == 0) {
+            return -1;
+        }
+        int mask = this.values.length - 1;
+        int index = mix(key) & mask;
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Removes an entry, shifting back entries that follow in the same probe sequence
+    private void removeAt(int index) {
+        int mask = this.values.length - 1;
+        int hole = index;
+        int next = (index + 1) & mask;
+        while (this.values[next] != null) {
+            int desired = mix(this.keys[next]) & mask;
+            // Move the entry into the hole if its desired slot is not between hole and next
+            if (((next - desired) & mask) >= ((next - hole) & mask)) {
+                this.keys[hole] = this.keys[next];
+                this.values[hole] = this.values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.values[hole] = null;
+        this.size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = mix(oldKeys[i]) & mask;
+                while (this.values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
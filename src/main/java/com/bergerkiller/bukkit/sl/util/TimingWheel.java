@@ -0,0 +1,196 @@
+package com.bergerkiller.bukkit.sl.util;
+
+/**
+ * Schedules values to expire a number of ticks into the future. Values are stored in
+ * a ring of slots indexed by their deadline, so that advancing one tick only visits the
+ * values in a single slot. Deadlines further away than the number of slots stay in their
+ * slot until the wheel has gone round often enough.<br>
+ * <br>
+ * Values that expired are kept in an expired queue in order of expiry, from which they
+ * can be polled. This allows the caller to limit how many values are handled per tick,
+ * carrying the rest over to the next tick.<br>
+ * <br>
+ * Scheduling and cancelling are O(1) because every value is tracked by an {@link Entry}
+ * linked into the slot it is in. This class is not thread-safe.
+ *
+ * @param <T> Value type
+ */
+public class TimingWheel<T> {
+    private final Entry<T>[] slots;
+    private final Entry<T> expired;
+    private int expiredCount;
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(int numSlots) {
+        if (numSlots <= 0) {
+            throw new IllegalArgumentException("Slot count must be positive: " + numSlots);
+        }
+        this.slots = new Entry[numSlots];
+        for (int i = 0; i < numSlots; i++) {
+            this.slots[i] = new Entry<T>(null);
+        }
+        this.expired = new Entry<T>(null);
+        this.expiredCount = 0;
+        this.currentTick = 0;
+    }
+
+    /**
+     * Gets the current tick of this wheel, which is the number of times
+     * {@link #advance()} was called.
+     *
+     * @return current tick
+     */
+    public long getCurrentTick() {
+        return this.currentTick;
+    }
+
+    /**
+     * Gets the number of values that expired but were not polled yet
+     *
+     * @return expired value count
+     */
+    public int getExpiredCount() {
+        return this.expiredCount;
+    }
+
+    /**
+     * Schedules an entry to expire a number of ticks from now. If the entry was
+     * already scheduled, or expired and not yet polled, it is re-scheduled.
+     *
+     * @param entry Entry to schedule
+     * @param delay Number of ticks from now the entry should expire, at least 1
+     */
+    public void schedule(Entry<T> entry, int delay) {
+        if (delay < 1) {
+            delay = 1;
+        }
+        cancel(entry);
+        entry.deadline = this.currentTick + delay;
+        entry.linkBefore(this.slots[(int) (entry.deadline % this.slots.length)]);
+    }
+
+    /**
+     * Cancels an entry so that it does not expire. Does nothing if the entry
+     * is not scheduled.
+     *
+     * @param entry Entry to cancel
+     */
+    public void cancel(Entry<T> entry) {
+        if (entry.isScheduled()) {
+            if (entry.isExpired) {
+                entry.isExpired = false;
+                this.expiredCount--;
+            }
+            entry.unlink();
+        }
+    }
+
+    /**
+     * Advances this wheel by one tick. Entries whose deadline is reached are
+     * moved to the expired queue, where they can be obtained using {@link #poll()}.
+     */
+    public void advance() {
+        long tick = ++this.currentTick;
+        Entry<T> head = this.slots[(int) (tick % this.slots.length)];
+        Entry<T> entry = head.next;
+        while (entry != head) {
+            Entry<T> next = entry.next;
+            if (entry.deadline <= tick) {
+                entry.unlink();
+                entry.linkBefore(this.expired);
+                entry.isExpired = true;
+                this.expiredCount++;
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * Removes and returns the value that expired the longest time ago
+     *
+     * @return expired value, or null if no values are expired
+     */
+    public T poll() {
+        Entry<T> entry = this.expired.next;
+        if (entry == this.expired) {
+            return null;
+        }
+        entry.isExpired = false;
+        entry.unlink();
+        this.expiredCount--;
+        return entry.value;
+    }
+
+    /**
+     * Cancels all entries scheduled in this wheel
+     */
+    public void clear() {
+        for (Entry<T> head : this.slots) {
+            head.clearList();
+        }
+        this.expired.clearList();
+        this.expiredCount = 0;
+    }
+
+    /**
+     * A value that can be scheduled in a timing wheel. The same entry should
+     * be re-used when scheduling the same value again.
+     *
+     * @param <T> Value type
+     */
+    public static final class Entry<T> {
+        private final T value;
+        private Entry<T> prev;
+        private Entry<T> next;
+        private long deadline;
+        private boolean isExpired;
+
+        public Entry(T value) {
+            this.value = value;
+            this.prev = this;
+            this.next = this;
+            this.deadline = 0;
+            this.isExpired = false;
+        }
+
+        /**
+         * Gets the value of this entry
+         *
+         * @return value
+         */
+        public T getValue() {
+            return this.value;
+        }
+
+        /**
+         * Gets whether this entry is scheduled, or expired and not yet polled
+         *
+         * @return True if scheduled
+         */
+        public boolean isScheduled() {
+            return this.next != this;
+        }
+
+        private void linkBefore(Entry<T> head) {
+            this.prev = head.prev;
+            this.next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        private void unlink() {
+            this.prev.next = this.next;
+            this.next.prev = this.prev;
+            this.prev = this;
+            this.next = this;
+        }
+
+        private void clearList() {
+            while (this.next != this) {
+                this.next.isExpired = false;
+                this.next.unlink();
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.bergerkiller.bukkit.sl.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache that removes the least recently used values once the total weight of
+ * the values stored exceeds a maximum. The weight of every value is decided by
+ * a {@link Weigher}, for example the approximate number of bytes it uses.
+ * Null values are not supported. This class is not thread-safe.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class WeightedLruCache<K, V> {
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<K, V>(16, 0.75f, true);
+    private final Weigher<? super K, ? super V> weigher;
+    private final long maxWeight;
+    private long weight = 0;
+
+    public WeightedLruCache(long maxWeight, Weigher<? super K, ? super V> weigher) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Maximum weight must be positive: " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Gets the number of values stored in this cache
+     *
+     * @return size
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Gets the total weight of all values stored in this cache
+     *
+     * @return weight
+     */
+    public long getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * Gets the maximum total weight of the values stored in this cache
+     *
+     * @return maximum weight
+     */
+    public long getMaxWeight() {
+        return this.maxWeight;
+    }
+
+    /**
+     * Gets a value stored in this cache, marking it as most recently used
+     *
+     * @param key Key
+     * @return value, or null if not stored
+     */
+    public V get(K key) {
+        return this.entries.get(key);
+    }
+
+    /**
+     * Stores a value in this cache as the most recently used value. Removes the least
+     * recently used values if the maximum weight is exceeded. A value weighing more than
+     * the maximum weight is not stored at all, and does not remove any other values.
+     * The value stored for the same key before is removed, as it is outdated.
+     *
+     * @param key Key
+     * @param value Value to store, can not be null
+     */
+    public void put(K key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        int valueWeight = this.weigher.weigh(key, value);
+        if (valueWeight > this.maxWeight) {
+            remove(key);
+            return;
+        }
+        V prev = this.entries.put(key, value);
+        if (prev != null) {
+            this.weight -= this.weigher.weigh(key, prev);
+        }
+        this.weight += valueWeight;
+        evict();
+    }
+
+    /**
+     * Gets a value stored in this cache, or computes and stores it if not stored
+     *
+     * @param key Key
+     * @param mappingFunction Computes the value for the key if not stored, can not return null
+     * @return value
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = this.entries.get(key);
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes a value from this cache
+     *
+     * @param key Key
+     * @return value that was removed, or null if none was stored
+     */
+    public V remove(K key) {
+        V removed = this.entries.remove(key);
+        if (removed != null) {
+            this.weight -= this.weigher.weigh(key, removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all values from this cache
+     */
+    public void clear() {
+        this.entries.clear();
+        this.weight = 0;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<K, V>> iter = this.entries.entrySet().iterator();
+        while (this.weight > this.maxWeight && iter.hasNext()) {
+            Map.Entry<K, V> eldest = iter.next();
+            this.weight -= this.weigher.weigh(eldest.getKey(), eldest.getValue());
+            iter.remove();
+        }
+    }
+
+    /**
+     * Decides the weight of a value stored in the cache. Must return the same
+     * weight every time for the same key and value.
+     *
+     * @param <K> Key type
+     * @param <V> Value type
+     */
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        int weigh(K key, V value);
+    }
+}
@@ -0,0 +1,77 @@
+package com.bergerkiller.bukkit.sl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.bergerkiller.bukkit.sl.util.ChunkIndex;
+
+public class ChunkIndexTest {
+
+    @Test
+    public void testAddAndForEachInChunk() {
+        ChunkIndex<String, String> index = new ChunkIndex<>();
+        index.add("world", 0, 0, "A");
+        index.add("world", 0, 0, "B");
+        index.add("world", 1, 0, "C");
+        index.add("other", 0, 0, "D");
+
+        List<String> result = new ArrayList<>();
+        index.forEachInChunk("world", 0, 0, result::add);
+        assertEquals(Arrays.asList("A", "B"), result);
+    }
+
+    @Test
+    public void testForEachInChunkRange() {
+        ChunkIndex<String, String> index = new ChunkIndex<>();
+        index.add("world", -1, -1, "A");
+        index.add("world", 0, 0, "B");
+        index.add("world", 2, 0, "C");
+        index.add("world", 5, 5, "D");
+
+        List<String> result = new ArrayList<>();
+        index.forEachInChunkRange("world", -1, -1, 2, 2, result::add);
+        Collections.sort(result);
+        assertEquals(Arrays.asList("A", "B", "C"), result);
+
+        // Very large area uses a different code path, should give the same result
+        result.clear();
+        index.forEachInChunkRange("world", -1, -1, 1000, 2, result::add);
+        Collections.sort(result);
+        assertEquals(Arrays.asList("A", "B", "C"), result);
+    }
+
+    @Test
+    public void testRemove() {
+        ChunkIndex<String, String> index = new ChunkIndex<>();
+        index.add("world", 0, 0, "A");
+        index.add("world", 0, 0, "B");
+        assertTrue(index.remove("world", 0, 0, "A"));
+        assertFalse(index.remove("world", 0, 0, "A"));
+        assertFalse(index.remove("world", 1, 0, "B"));
+
+        List<String> result = new ArrayList<>();
+        index.forEachInChunk("world", 0, 0, result::add);
+        assertEquals(Collections.singletonList("B"), result);
+    }
+
+    @Test
+    public void testRemoveChunkAndWorld() {
+        ChunkIndex<String, String> index = new ChunkIndex<>();
+        index.add("world", 0, 0, "A");
+        index.add("world", 0, 0, "B");
+        index.add("world", 3, -2, "C");
+        index.add("other", 0, 0, "D");
+
+        assertEquals(Arrays.asList("A", "B"), index.removeChunk("world", 0, 0));
+        assertEquals(Collections.emptyList(), index.removeChunk("world", 0, 0));
+        assertEquals(Collections.singletonList("C"), index.removeWorld("world"));
+        assertEquals(Collections.emptyList(), index.removeWorld("world"));
+        assertEquals(Collections.singletonList("D"), index.removeWorld("other"));
+    }
+}
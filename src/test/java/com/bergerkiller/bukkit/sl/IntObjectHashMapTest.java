@@ -0,0 +1,81 @@
+package com.bergerkiller.bukkit.sl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.bergerkiller.bukkit.sl.util.IntObjectHashMap;
+
+public class IntObjectHashMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(5));
+
+        assertNull(map.put(5, "A"));
+        assertNull(map.put(-3, "B"));
+        assertEquals("A", map.put(5, "C"));
+        assertEquals(2, map.size());
+        assertEquals("C", map.get(5));
+        assertEquals("B", map.get(-3));
+        assertTrue(map.containsKey(-3));
+        assertEquals("D", map.getOrDefault(7, "D"));
+
+        assertEquals("C", map.remove(5));
+        assertNull(map.remove(5));
+        assertFalse(map.containsKey(5));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(-3));
+    }
+
+    @Test
+    public void testValuesAndForEach() {
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            map.put(i, "V" + i);
+        }
+
+        List<String> values = new ArrayList<>(map.values());
+        Collections.sort(values);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add("V" + i);
+        }
+        Collections.sort(expected);
+        assertEquals(expected, values);
+
+        map.forEach((key, value) -> assertEquals("V" + key, value));
+    }
+
+    @Test
+    public void testRandomAgainstHashMap() {
+        // Lots of collisions in a small key range exercise removal shifting
+        Random random = new Random(12345);
+        IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+        Map<Integer, Integer> reference = new HashMap<>();
+        for (int n = 0; n < 20000; n++) {
+            int key = random.nextInt(200) * 64;
+            if (random.nextBoolean()) {
+                assertEquals(reference.put(key, n), map.put(key, n));
+            } else {
+                assertEquals(reference.remove(key), map.remove(key));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        for (int key = 0; key < 200 * 64; key += 64) {
+            assertEquals(reference.get(key), map.get(key));
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.bergerkiller.bukkit.sl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.bukkit.ChatColor;
+import org.junit.Test;
+
+import com.bergerkiller.bukkit.common.block.SignSide;
+
+/**
+ * Compares the layout of text on linked signs with the original implementation,
+ * which added one space at a time and counted the signs needed every time.
+ */
+public class LinkedTextTest {
+    private static final String[] WORDS = { "a", "i", "W", "hello", "!!", "@@", ".", " ", "  ", "mmmm", "|||" };
+    private static final ChatColor[] STYLES = { ChatColor.RED, ChatColor.BLUE, ChatColor.BOLD, ChatColor.ITALIC, ChatColor.RESET };
+
+    @Test
+    public void testCentred() {
+        for (int signCount = 1; signCount <= 4; signCount++) {
+            assertLayout(signCount, SignDirection.NONE, true, false, "", "Hello", "");
+            assertLayout(signCount, SignDirection.NONE, true, false, "[", "Hello", "]");
+            assertLayout(signCount, SignDirection.LEFT, true, false, "", "Hello", "");
+            assertLayout(signCount, SignDirection.RIGHT, true, false, "", ChatColor.RED + "Hello", "");
+        }
+    }
+
+    @Test
+    public void testLeftAndRight() {
+        for (SignDirection direction : new SignDirection[] { SignDirection.LEFT, SignDirection.RIGHT }) {
+            for (int signCount = 1; signCount <= 4; signCount++) {
+                assertLayout(signCount, direction, false, false, "", "Hello", "");
+                assertLayout(signCount, direction, false, false, "Time: ", "12:00", "");
+                assertLayout(signCount, direction, false, false, "", "12:00", " left");
+                assertLayout(signCount, direction, false, false, "<", ChatColor.BOLD + "A long value that spans signs", ">");
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyValue() {
+        assertLayout(1, SignDirection.NONE, true, false, "", "", "");
+        assertLayout(3, SignDirection.LEFT, false, false, "Value: ", "", "");
+        assertLayout(3, SignDirection.RIGHT, false, false, "", ChatColor.RED.toString(), "!");
+    }
+
+    @Test
+    public void testWrapAround() {
+        for (SignDirection direction : SignDirection.values()) {
+            for (int signCount = 1; signCount <= 4; signCount++) {
+                assertLayout(signCount, direction, false, true, "", "ab", "");
+                assertLayout(signCount, direction, false, true, "", "Scrolling text ", "");
+                assertLayout(signCount, direction, false, true, ">", ChatColor.BLUE + "Scrolling " + ChatColor.BOLD + "text ", "<");
+            }
+        }
+    }
+
+    @Test
+    public void testCharacterWiderThanSpaceLeft() {
+        // The text before and after leaves less space on a sign than a single character is wide
+        String filler = repeat('|', 43);
+        for (SignDirection direction : SignDirection.values()) {
+            for (int signCount = 1; signCount <= 3; signCount++) {
+                assertLayout(signCount, direction, direction == SignDirection.NONE, false, filler, "W", "");
+                assertLayout(signCount, direction, direction == SignDirection.NONE, false, "", "W", filler);
+                assertLayout(signCount, direction, true, false, filler, ChatColor.BOLD + "WWW", filler);
+                assertLayout(signCount, direction, false, true, filler, "@", filler);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomLayouts() {
+        Random random = new Random(1234);
+        SignDirection[] directions = SignDirection.values();
+        for (int n = 0; n < 5000; n++) {
+            int signCount = 1 + random.nextInt(5);
+            SignDirection direction = directions[random.nextInt(directions.length)];
+            boolean centred = (direction == SignDirection.NONE) || random.nextInt(4) == 0;
+            boolean wrapAround = random.nextInt(3) == 0;
+            String prefix = random.nextInt(3) == 0 ? randomText(random, 4) : "";
+            String postfix = random.nextInt(3) == 0 ? randomText(random, 4) : "";
+            String value = randomText(random, 20);
+            assertLayout(signCount, direction, centred, wrapAround, prefix, value, postfix);
+        }
+    }
+
+    private static void assertLayout(int signCount, SignDirection direction, boolean centred, boolean wrapAround,
+                                     String prefix, String value, String postfix
+    ) {
+        LinkedText text = new LinkedText(SignSide.FRONT, 0);
+        text.setSigns(Collections.<VirtualSign>nCopies(signCount, null));
+        text.setDirection(direction);
+        text.setWrapAround(wrapAround);
+        text.setEnds(prefix, postfix, centred);
+        String[] actual = text.layout(value);
+
+        ReferenceLayout reference = new ReferenceLayout(signCount, direction, centred, wrapAround);
+        String[] expected = reference.layout(prefix, value, postfix);
+
+        assertArrayEquals("signs=" + signCount + " direction=" + direction + " centred=" + centred +
+                " wrapAround=" + wrapAround + " text=[" + prefix + "|" + value + "|" + postfix + "]",
+                expected, actual);
+    }
+
+    private static String randomText(Random random, int maxParts) {
+        StringBuilder str = new StringBuilder();
+        int numParts = random.nextInt(maxParts + 1);
+        for (int i = 0; i < numParts; i++) {
+            if (random.nextInt(4) == 0) {
+                str.append(STYLES[random.nextInt(STYLES.length)]);
+            } else {
+                str.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+        }
+        return str.toString();
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    /**
+     * The layout algorithm as it was before the width sums were used, operating
+     * on lists of styled characters
+     */
+    private static final class ReferenceLayout {
+        private final int signCount;
+        private final SignDirection direction;
+        private final boolean isCentred;
+        private final boolean wrapAround;
+        private final int[] remainingWidths;
+        private final List<StyledCharacter> prefixChars = new ArrayList<>();
+        private final List<StyledCharacter> postfixChars = new ArrayList<>();
+        private final List<StyledCharacter> characters = new ArrayList<>();
+
+        public ReferenceLayout(int signCount, SignDirection direction, boolean isCentred, boolean wrapAround) {
+            this.signCount = signCount;
+            this.direction = direction;
+            this.isCentred = isCentred;
+            this.wrapAround = wrapAround;
+            this.remainingWidths = new int[signCount];
+        }
+
+        public String[] layout(String prefix, String value, String postfix) {
+            int firstSignIndex = 0;
+            int lastSignIndex = this.signCount - 1;
+            if (this.direction == SignDirection.LEFT) {
+                firstSignIndex = lastSignIndex;
+                lastSignIndex = 0;
+            }
+
+            // Parsing of the text is not what is tested here
+            StyledString prefixString = new StyledString();
+            prefixString.setTo(prefix);
+            StyledString valueString = new StyledString();
+            valueString.setStartStyle(prefixString.getEndStyle());
+            valueString.setTo(value);
+            StyledString postfixString = new StyledString();
+            postfixString.setStartStyle(valueString.getEndStyle());
+            postfixString.setTo(postfix);
+            this.prefixChars.addAll(prefixString);
+            this.characters.addAll(valueString);
+            this.postfixChars.addAll(postfixString);
+
+            if (totalWidth(this.characters) == 0) {
+                if (this.prefixChars.isEmpty()) {
+                    this.characters.add(new StyledCharacter(' '));
+                } else {
+                    this.characters.add(this.prefixChars.get(this.prefixChars.size() - 1).asSpace());
+                }
+            }
+
+            Arrays.fill(this.remainingWidths, VirtualLines.LINE_WIDTH_LIMIT);
+            this.remainingWidths[firstSignIndex] -= totalWidth(this.prefixChars);
+            this.remainingWidths[lastSignIndex] -= totalWidth(this.postfixChars);
+
+            if (this.wrapAround) {
+                this.handleWrapAround();
+            } else if (this.signCount > 1 || this.direction != SignDirection.NONE) {
+                this.handleMultiSign();
+            }
+            return this.createParts();
+        }
+
+        private void handleWrapAround() {
+            int remainingSigns = this.signCount;
+            int width = 0;
+            for (StyledCharacter character : this.characters) {
+                width += character.width;
+                if (width > VirtualLines.LINE_WIDTH_LIMIT) {
+                    width = character.width;
+                    remainingSigns--;
+                    if (remainingSigns == 0) {
+                        width -= character.width;
+                        break;
+                    }
+                }
+            }
+
+            if (remainingSigns > 0) {
+                List<StyledCharacter> original = new ArrayList<>(this.characters);
+                int wrappedCharIdx = 0;
+                while (true) {
+                    if (wrappedCharIdx == original.size()) {
+                        wrappedCharIdx = 0;
+                    }
+                    StyledCharacter sc = original.get(wrappedCharIdx++);
+                    width += sc.width;
+                    if (width > VirtualLines.LINE_WIDTH_LIMIT) {
+                        width = sc.width;
+                        if (--remainingSigns == 0) {
+                            break;
+                        }
+                    }
+                    this.characters.add(sc);
+                }
+            }
+        }
+
+        private void handleMultiSign() {
+            int leftPadding = totalWidth(this.prefixChars);
+            int rightPadding = totalWidth(this.postfixChars);
+            StyledCharacter space_first = this.characters.get(0).asSpace();
+            StyledCharacter space_last = this.characters.get(this.characters.size() - 1).asSpace();
+            SignDirection space_dir = this.direction;
+            boolean alternator = false;
+            while (true) {
+                if (this.isCentred) {
+                    alternator = !alternator;
+                    space_dir = alternator ? SignDirection.LEFT : SignDirection.RIGHT;
+                }
+                if (space_dir == SignDirection.LEFT) {
+                    this.characters.add(0, space_first);
+                    if (getSignCount(this.characters, leftPadding, rightPadding) > this.signCount) {
+                        this.characters.remove(0);
+                        break;
+                    }
+                } else {
+                    this.characters.add(space_last);
+                    if (getSignCount(this.characters, leftPadding, rightPadding) > this.signCount) {
+                        this.characters.remove(this.characters.size() - 1);
+                        break;
+                    }
+                }
+            }
+        }
+
+        private String[] createParts() {
+            List<List<StyledCharacter>> parts = new ArrayList<>();
+            for (int i = 0; i < this.signCount; i++) {
+                parts.add(new ArrayList<>());
+            }
+
+            List<StyledCharacter> tmp = new ArrayList<>();
+            int signIndex = 0;
+            int currentLineWidth = 0;
+            int charIndex = 0;
+            while (true) {
+                boolean hasNext = charIndex < this.characters.size();
+                StyledCharacter sc = hasNext ? this.characters.get(charIndex++) : null;
+                if (hasNext) {
+                    currentLineWidth += sc.width;
+                }
+
+                if (currentLineWidth > this.remainingWidths[signIndex] || !hasNext) {
+                    currentLineWidth = hasNext ? sc.width : 0;
+
+                    List<StyledCharacter> part = parts.get(signIndex);
+                    if (signIndex == 0) {
+                        part.addAll(this.prefixChars);
+                    }
+                    part.addAll(tmp);
+                    tmp.clear();
+                    if (signIndex == this.signCount - 1) {
+                        part.addAll(this.postfixChars);
+                    }
+
+                    if (!hasNext || ++signIndex >= this.signCount) {
+                        break;
+                    }
+                }
+                tmp.add(sc);
+            }
+
+            String[] texts = new String[this.signCount];
+            for (int i = 0; i < texts.length; i++) {
+                StyledString part = new StyledString();
+                part.addAll(parts.get(i));
+                texts[i] = part.toString();
+            }
+            return texts;
+        }
+
+        private static int getSignCount(List<StyledCharacter> characters, int leftPadding, int rightPadding) {
+            int signCount = 1;
+            int endIndex = characters.size() - 1;
+            int width = rightPadding;
+            while (endIndex >= 0) {
+                int newWidth = width + characters.get(endIndex).width;
+                if (newWidth < VirtualLines.LINE_WIDTH_LIMIT) {
+                    width = newWidth;
+                    endIndex--;
+                } else {
+                    break;
+                }
+            }
+            if (endIndex < 0) {
+                return ((width + leftPadding) < VirtualLines.LINE_WIDTH_LIMIT) ? 1 : 2;
+            }
+
+            width = leftPadding;
+            for (int i = 0; i <= endIndex; i++) {
+                StyledCharacter sc = characters.get(i);
+                width += sc.width;
+                if (width >= VirtualLines.LINE_WIDTH_LIMIT) {
+                    width = sc.width;
+                    signCount++;
+                }
+            }
+            if (width > 0) {
+                signCount++;
+            }
+            return signCount;
+        }
+
+        private static int totalWidth(List<StyledCharacter> characters) {
+            int width = 0;
+            for (StyledCharacter sc : characters) {
+                width += sc.width;
+            }
+            return width;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.bergerkiller.bukkit.sl;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.bergerkiller.bukkit.sl.util.LongObjectHashMap;
+
+public class LongObjectHashMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(5L));
+
+        assertNull(map.put(5L, "A"));
+        assertNull(map.put(-3L << 40, "B"));
+        assertEquals("A", map.put(5L, "C"));
+        assertEquals(2, map.size());
+        assertEquals("C", map.get(5L));
+        assertEquals("B", map.get(-3L << 40));
+
+        assertEquals("C", map.remove(5L));
+        assertNull(map.remove(5L));
+        assertNull(map.get(5L));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(-3L << 40));
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        map.put(1L, "A");
+        map.put(2L, "B");
+        LongObjectHashMap<String> copy = new LongObjectHashMap<>(map);
+        map.remove(1L);
+        map.put(3L, "C");
+
+        assertEquals(2, copy.size());
+        assertEquals("A", copy.get(1L));
+        assertEquals("B", copy.get(2L));
+        assertNull(copy.get(3L));
+    }
+
+    @Test
+    public void testRandomAgainstHashMap() {
+        Random random = new Random(1234);
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(500) * 0x100000001L;
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, key), map.put(key, key));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key : expected.keySet()) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.bergerkiller.bukkit.sl;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+public class SignPacketWorkersTest {
+
+    @Test
+    public void testSendWithoutThreads() {
+        final List<Thread> sentOn = new ArrayList<>();
+        SignPacketWorkers workers = new SignPacketWorkers(0, (sign, lines, packet, recipients) -> {
+            sentOn.add(Thread.currentThread());
+        });
+        SignPacketWorkers.SignPackets packets = new SignPacketWorkers.SignPackets(null);
+
+        // Both kinds of send complete before returning, on the calling thread
+        workers.send(packets, null, null, Collections.<Player>emptyList());
+        assertEquals(1, sentOn.size());
+        workers.sendUnchanged(packets, null, createPlayer());
+        assertEquals(2, sentOn.size());
+        assertSame(Thread.currentThread(), sentOn.get(0));
+        assertSame(Thread.currentThread(), sentOn.get(1));
+        workers.shutdown();
+    }
+
+    @Test
+    public void testSendUnchangedSupersedesQueuedSends() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final List<List<Player>> sent = Collections.synchronizedList(new ArrayList<>());
+        SignPacketWorkers workers = new SignPacketWorkers(2, (sign, lines, packet, recipients) -> {
+            try {
+                started.countDown();
+                blocked.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            sent.add(recipients);
+        });
+        SignPacketWorkers.SignPackets packets = new SignPacketWorkers.SignPackets(null);
+        Player a = createPlayer();
+        Player b = createPlayer();
+
+        // The first send is being sent while the others are queued. The unchanged packet
+        // for player a replaces the queued sends to a, but not the sends after it.
+        workers.send(packets, null, null, Arrays.asList(a, b));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        workers.send(packets, null, null, Arrays.asList(a, b));
+        workers.send(packets, null, null, Collections.singletonList(a));
+        workers.sendUnchanged(packets, null, a);
+        workers.send(packets, null, null, Arrays.asList(a, b));
+        blocked.countDown();
+        workers.shutdown();
+        assertTrue(awaitSent(sent, 4));
+
+        assertEquals(4, sent.size());
+        assertEquals(Arrays.asList(a, b), sent.get(0));
+        assertEquals(Collections.singletonList(b), sent.get(1));
+        assertEquals(Collections.singletonList(a), sent.get(2));
+        assertEquals(Arrays.asList(a, b), sent.get(3));
+    }
+
+    private static boolean awaitSent(List<?> sent, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.size() < count) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    private static Player createPlayer() {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[] { Player.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    } else if (method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    } else {
+                        return null;
+                    }
+                });
+    }
+}
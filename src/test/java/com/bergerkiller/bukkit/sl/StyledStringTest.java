@@ -0,0 +1,197 @@
+package com.bergerkiller.bukkit.sl;
+
+import static org.junit.Assert.*;
+
+import org.bukkit.ChatColor;
+import org.junit.Test;
+
+import com.bergerkiller.bukkit.common.utils.LogicUtil;
+import com.bergerkiller.bukkit.common.utils.StringUtil;
+
+public class StyledStringTest {
+    private static final String HEX_RED = hex("ff0000");
+
+    @Test
+    public void testParse() {
+        StyledString str = parse("a" + ChatColor.RED + "b" + ChatColor.BOLD + "c" + ChatColor.RESET + "d");
+        assertEquals(4, str.size());
+        assertCharacter(str.get(0), 'a', StyledColor.NONE, false);
+        assertCharacter(str.get(1), 'b', StyledColor.byColor(ChatColor.RED), false);
+        assertCharacter(str.get(2), 'c', StyledColor.byColor(ChatColor.RED), true);
+        assertCharacter(str.get(3), 'd', StyledColor.NONE, false);
+        assertEquals(StyledColor.NONE, str.getEndStyle().color);
+    }
+
+    @Test
+    public void testParseHexColor() {
+        StyledString str = parse(HEX_RED + "ab" + ChatColor.BOLD + "c" + ChatColor.BLUE + "d");
+        assertEquals(4, str.size());
+        assertTrue(str.get(0).color.isHex());
+        assertEquals(str.get(0).color, str.get(1).color);
+        assertCharacter(str.get(2), 'c', str.get(0).color, true);
+        assertCharacter(str.get(3), 'd', StyledColor.byColor(ChatColor.BLUE), true);
+    }
+
+    @Test
+    public void testToString() {
+        assertRoundTrip("");
+        assertRoundTrip("Hello");
+        assertRoundTrip(ChatColor.RED + "Hello " + ChatColor.BLUE + "World");
+        assertRoundTrip(ChatColor.RED + "Hello " + ChatColor.BOLD + "World");
+        assertRoundTrip(HEX_RED + "Hex" + ChatColor.GREEN + "Legacy");
+
+        // Same style twice is only written once
+        assertEquals(ChatColor.RED + "ab", parse(ChatColor.RED + "a" + ChatColor.RED + "b").toString());
+        assertEquals(HEX_RED + "ab", parse(HEX_RED + "a" + HEX_RED + "b").toString());
+    }
+
+    @Test
+    public void testWidths() {
+        StyledString str = parse("ai" + ChatColor.BOLD + "ai");
+        int total = 0;
+        for (int i = 0; i < str.size(); i++) {
+            StyledCharacter sc = str.get(i);
+            assertEquals(StyledCharacter.getWidth(sc.character, i >= 2), sc.width);
+            assertEquals(sc.width, str.getWidth(i));
+            total += sc.width;
+        }
+        assertEquals(total, str.getTotalWidth());
+        assertEquals(str.getWidth(0) + 1, str.getWidth(2));
+
+        str.clear();
+        assertEquals(0, str.getTotalWidth());
+    }
+
+    @Test
+    public void testAppendRange() {
+        StyledString source = parse("ab" + ChatColor.RED + "cd" + ChatColor.ITALIC + "ef");
+        StyledString str = parse(ChatColor.BLUE + "x");
+        str.append(source, 1, 5);
+        assertEquals(5, str.size());
+        assertCharacter(str.get(0), 'x', StyledColor.byColor(ChatColor.BLUE), false);
+        for (int i = 1; i < 5; i++) {
+            assertSameCharacter(source.get(i), str.get(i));
+        }
+        assertEquals(parse(ChatColor.BLUE + "x").getTotalWidth() + widthOf(source, 1, 5), str.getTotalWidth());
+
+        str.append(source, 3, 3);
+        assertEquals(5, str.size());
+
+        try {
+            str.append(source, 4, 7);
+            fail("Range past the end was appended");
+        } catch (IndexOutOfBoundsException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testAddRepeated() {
+        StyledString str = parse("ab" + ChatColor.RED + "c");
+        StyledCharacter space = str.get(2).asSpace();
+        str.addRepeated(1, space, 3);
+        assertEquals(6, str.size());
+        assertEquals('a', str.get(0).character);
+        for (int i = 1; i <= 3; i++) {
+            assertSameCharacter(space, str.get(i));
+        }
+        assertCharacter(str.get(4), 'b', StyledColor.NONE, false);
+        assertCharacter(str.get(5), 'c', StyledColor.byColor(ChatColor.RED), false);
+        assertEquals(widthOf(str, 0, str.size()), str.getTotalWidth());
+
+        str.addRepeated(str.size(), space, 0);
+        assertEquals(6, str.size());
+    }
+
+    @Test
+    public void testRemove() {
+        StyledString str = parse("a" + ChatColor.RED + "b" + ChatColor.BLUE + "c");
+        StyledCharacter removed = str.remove(1);
+        assertCharacter(removed, 'b', StyledColor.byColor(ChatColor.RED), false);
+        assertEquals(2, str.size());
+        assertCharacter(str.get(0), 'a', StyledColor.NONE, false);
+        assertCharacter(str.get(1), 'c', StyledColor.byColor(ChatColor.BLUE), false);
+        assertEquals("a" + ChatColor.BLUE + "c", str.toString());
+        assertEquals(widthOf(str, 0, str.size()), str.getTotalWidth());
+
+        str.remove(0);
+        str.remove(0);
+        assertTrue(str.isEmpty());
+        assertEquals(0, str.getTotalWidth());
+    }
+
+    @Test
+    public void testClone() {
+        StyledString str = parse("ab" + ChatColor.RED + "cd");
+        StyledString clone = str.clone();
+        assertEquals(str.toString(), clone.toString());
+
+        clone.remove(0);
+        clone.add(new StyledCharacter('e'));
+        str.add(0, new StyledCharacter('f'));
+        assertEquals("fab" + ChatColor.RED + "cd", str.toString());
+        assertEquals("b" + ChatColor.RED + "cd" + ChatColor.RESET + "e", clone.toString());
+    }
+
+    @Test
+    public void testStyleOnly() {
+        StyledString str = parse(ChatColor.RED.toString() + ChatColor.BOLD);
+        assertEquals(1, str.size());
+        assertTrue(str.get(0).isStyleOnly());
+        assertEquals(0, str.getTotalWidth());
+        assertEquals(StyledColor.byColor(ChatColor.RED), str.get(0).color);
+        assertArrayEquals(new ChatColor[] { ChatColor.BOLD }, str.get(0).formats);
+        assertEquals(str.toString(), parse(str.toString()).toString());
+
+        // The style carries on to text that follows
+        StyledString next = new StyledString();
+        next.setStartStyle(str.getEndStyle());
+        next.setTo("a");
+        assertCharacter(next.get(0), 'a', StyledColor.byColor(ChatColor.RED), true);
+
+        // Only an empty string stores the style
+        str.setTo("a" + ChatColor.RED);
+        assertEquals(1, str.size());
+        assertFalse(str.get(0).isStyleOnly());
+    }
+
+    private static StyledString parse(String text) {
+        StyledString str = new StyledString();
+        str.setTo(text);
+        return str;
+    }
+
+    private static void assertRoundTrip(String text) {
+        assertEquals(text, parse(text).toString());
+    }
+
+    private static void assertCharacter(StyledCharacter sc, char c, StyledColor color, boolean bold) {
+        assertEquals(c, sc.character);
+        assertEquals(color, sc.color);
+        assertEquals(bold, LogicUtil.contains(ChatColor.BOLD, sc.formats));
+    }
+
+    private static void assertSameCharacter(StyledCharacter expected, StyledCharacter actual) {
+        assertEquals(expected.character, actual.character);
+        assertEquals(expected.color, actual.color);
+        assertArrayEquals(expected.formats, actual.formats);
+        assertEquals(expected.width, actual.width);
+    }
+
+    private static int widthOf(StyledString str, int fromIndex, int toIndex) {
+        int width = 0;
+        for (int i = fromIndex; i < toIndex; i++) {
+            width += str.get(i).width;
+        }
+        return width;
+    }
+
+    private static String hex(String color) {
+        StringBuilder str = new StringBuilder();
+        str.append(StringUtil.CHAT_STYLE_CHAR).append('x');
+        for (int i = 0; i < color.length(); i++) {
+            str.append(StringUtil.CHAT_STYLE_CHAR).append(color.charAt(i));
+        }
+        return str.toString();
+    }
+}
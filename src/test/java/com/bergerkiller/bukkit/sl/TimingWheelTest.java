@@ -0,0 +1,95 @@
+package com.bergerkiller.bukkit.sl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.bergerkiller.bukkit.sl.util.TimingWheel;
+
+public class TimingWheelTest {
+
+    @Test
+    public void testExpireInOrder() {
+        TimingWheel<String> wheel = new TimingWheel<>(8);
+        TimingWheel.Entry<String> a = new TimingWheel.Entry<>("A");
+        TimingWheel.Entry<String> b = new TimingWheel.Entry<>("B");
+        wheel.schedule(a, 2);
+        wheel.schedule(b, 1);
+
+        wheel.advance();
+        assertEquals("B", wheel.poll());
+        assertNull(wheel.poll());
+        assertFalse(b.isScheduled());
+        assertTrue(a.isScheduled());
+
+        wheel.advance();
+        assertEquals(1, wheel.getExpiredCount());
+        assertEquals("A", wheel.poll());
+        assertEquals(0, wheel.getExpiredCount());
+        assertNull(wheel.poll());
+    }
+
+    @Test
+    public void testDelayLongerThanWheel() {
+        TimingWheel<String> wheel = new TimingWheel<>(4);
+        TimingWheel.Entry<String> a = new TimingWheel.Entry<>("A");
+        wheel.schedule(a, 10);
+        for (int i = 0; i < 9; i++) {
+            wheel.advance();
+            assertNull(wheel.poll());
+        }
+        wheel.advance();
+        assertEquals("A", wheel.poll());
+        assertEquals(10, wheel.getCurrentTick());
+    }
+
+    @Test
+    public void testCarryOverExpired() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(16);
+        for (int i = 0; i < 5; i++) {
+            wheel.schedule(new TimingWheel.Entry<>(i), 1);
+        }
+        wheel.advance();
+        assertEquals(Integer.valueOf(0), wheel.poll());
+        assertEquals(Integer.valueOf(1), wheel.poll());
+
+        // Remaining expired values stay until polled, before values expiring later
+        wheel.schedule(new TimingWheel.Entry<>(5), 1);
+        wheel.advance();
+        assertEquals(4, wheel.getExpiredCount());
+        assertEquals(Integer.valueOf(2), wheel.poll());
+        assertEquals(Integer.valueOf(3), wheel.poll());
+        assertEquals(Integer.valueOf(4), wheel.poll());
+        assertEquals(Integer.valueOf(5), wheel.poll());
+        assertNull(wheel.poll());
+    }
+
+    @Test
+    public void testRescheduleAndCancel() {
+        TimingWheel<String> wheel = new TimingWheel<>(8);
+        TimingWheel.Entry<String> a = new TimingWheel.Entry<>("A");
+        TimingWheel.Entry<String> b = new TimingWheel.Entry<>("B");
+        wheel.schedule(a, 1);
+        wheel.schedule(b, 1);
+        wheel.schedule(a, 3);
+        wheel.cancel(b);
+        assertFalse(b.isScheduled());
+
+        wheel.advance();
+        assertNull(wheel.poll());
+        wheel.advance();
+        wheel.advance();
+
+        // Cancelling an expired entry removes it from the expired queue
+        assertEquals(1, wheel.getExpiredCount());
+        wheel.cancel(a);
+        assertEquals(0, wheel.getExpiredCount());
+        assertNull(wheel.poll());
+
+        wheel.schedule(a, 1);
+        wheel.clear();
+        assertFalse(a.isScheduled());
+        wheel.advance();
+        assertNull(wheel.poll());
+    }
+}
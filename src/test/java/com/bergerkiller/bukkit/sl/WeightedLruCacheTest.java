@@ -0,0 +1,66 @@
+package com.bergerkiller.bukkit.sl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.bergerkiller.bukkit.sl.util.WeightedLruCache;
+
+public class WeightedLruCacheTest {
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(10, (key, value) -> value.length());
+        cache.put("a", "aaa");
+        cache.put("b", "bbb");
+        cache.put("c", "ccc");
+        assertEquals(9, cache.getWeight());
+
+        // Using a makes b the least recently used
+        assertEquals("aaa", cache.get("a"));
+        cache.put("d", "dd");
+        assertEquals(8, cache.getWeight());
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("aaa", cache.get("a"));
+        assertEquals("ccc", cache.get("c"));
+        assertEquals("dd", cache.get("d"));
+    }
+
+    @Test
+    public void testReplaceAndRemove() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(100, (key, value) -> value.length());
+        cache.put("a", "aaa");
+        cache.put("a", "aaaaa");
+        assertEquals(5, cache.getWeight());
+        assertEquals("aaaaa", cache.remove("a"));
+        assertNull(cache.remove("a"));
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testComputeIfAbsent() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(100, (key, value) -> value.length());
+        assertEquals("A", cache.computeIfAbsent("a", String::toUpperCase));
+        assertEquals("A", cache.computeIfAbsent("a", key -> "other"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testTooHeavy() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(4, (key, value) -> value.length());
+        cache.put("a", "aa");
+        cache.put("b", "bbbbbb");
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getWeight());
+        assertEquals("aa", cache.get("a"));
+        assertNull(cache.get("b"));
+
+        // Replacing a value with one that is too heavy removes the outdated value
+        cache.put("a", "aaaaaa");
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertNull(cache.get("a"));
+    }
+}